@@ -2,144 +2,334 @@ package DS;
 
 import Interface.IByteOperation;
 import Interface.IRecord;
+import Interface.IRecordView;
 
-import java.io.*;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.function.Supplier;
 
 public class Block<T extends IRecord<T>> implements IByteOperation<T> {
     protected int validCount;
     protected IRecord<T>[] records;
     protected int blockFactor;
-    protected final Class<T> recordType;
+    protected final Supplier<T> recordFactory;
     protected int recordSize;
     protected final int blockSize;
+    protected final RecordFormat recordFormat;
+    // Surové bajty načítanej stránky, platné sloty sa dekódujú až pri prvom prístupe
+    protected byte[] page;
+    protected ByteBuffer pageView;
+    protected boolean pageLoaded;
+    private ByteBuffer scratch;
+    // Inštancie, do ktorých blok dekóduje sloty; pri opätovnom načítaní stránky sa prepíšu namiesto vytvárania nových
+    private IRecord<T>[] owned;
+    // Bitmapa obsadených slotov v režime STABLE, na disku leží na konci bloku; null pri SWAP_LAST
+    private byte[] slotBitmap;
+    // Recyklovací pool HeapFile, ktorému sa blok vráti; null, ak si blok nechal buffer pool alebo log
+    Object lender;
 
 
     public Block(Class<T> recordType, int sizeOfBlock) {
-        this.recordType = recordType;
-        this.recordSize = this.getSizeOfRecord();
+        this(reflectiveFactory(recordType), sizeOfBlock);
+    }
+
+    public Block(Supplier<T> recordFactory, int sizeOfBlock) {
+        this(recordFactory, recordFactory.get().getSize(), sizeOfBlock);
+    }
+
+    public Block(Supplier<T> recordFactory, int recordSize, int sizeOfBlock) {
+        this(recordFactory, recordSize, sizeOfBlock, RecordFormat.WIDE);
+    }
+
+    // Veľkosť záznamu sa zistí raz na úrovni súboru, blok ju už len preberá
+    public Block(Supplier<T> recordFactory, int recordSize, int sizeOfBlock, RecordFormat recordFormat) {
+        this.recordFactory = recordFactory;
+        this.recordFormat = recordFormat;
+        this.recordSize = recordSize;
         this.blockSize = sizeOfBlock;
-        int actualSizeOfBlock = this.blockSize - Integer.BYTES;
+        int actualSizeOfBlock = this.blockSize - this.getHeaderSize();
         this.blockFactor = actualSizeOfBlock / this.recordSize;
         this.records = new IRecord[this.blockFactor];
         this.validCount = 0;
     }
 
-    private int getSizeOfRecord() {
+    protected int getHeaderSize() {
+        return Integer.BYTES;
+    }
+
+    // Záložná továreň pre volajúcich, ktorí odovzdajú iba triedu, konštruktor sa vyhľadá iba raz
+    public static <R> Supplier<R> reflectiveFactory(Class<R> recordType) {
+        Constructor<R> constructor;
         try {
-            return this.recordType.getDeclaredConstructor().newInstance().getSize();
-        } catch (InstantiationException e) {
+            constructor = recordType.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
             throw new IllegalStateException("Cannot instantiate record type", e);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
-            throw new RuntimeException(e);
         }
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (InstantiationException e) {
+                throw new IllegalStateException("Cannot instantiate record type", e);
+            } catch (InvocationTargetException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        };
     }
 
     @Override
     public T fromByteArray(byte[] bytesArray) {
-        this.clearBlock();
-        ByteArrayInputStream hlpByteArrayInputStream = new ByteArrayInputStream(bytesArray);
-        DataInputStream hlpInStream = new DataInputStream(hlpByteArrayInputStream);
-        try {
-            this.validCount = hlpInStream.readInt();
-            for (int i = 0; i < this.blockFactor; i++) {
-                byte[] recordBytes = new byte[this.recordSize];
-                hlpInStream.read(recordBytes);
-                T recordInstance = this.recordType.getDeclaredConstructor().newInstance();
-                IRecord<T> record = recordInstance.fromByteArray(recordBytes);
-                this.records[i] = record;
-            }
-            return null;
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot deserialize record", e);
-        } catch (InstantiationException e) {
-            throw new IllegalStateException("Cannot instantiate record type", e);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
+        return this.readFrom(ByteBuffer.wrap(bytesArray));
     }
 
     protected void clearBlock() {
         Arrays.fill(this.records, null);
         this.validCount = 0;
+        if (this.slotBitmap != null) {
+            Arrays.fill(this.slotBitmap, (byte) 0);
+        }
+    }
+
+    // Sloty ostávajú na mieste aj po zmazaní, voľné sa hľadajú v bitmape; volá sa hneď po vytvorení prázdneho bloku
+    public void enableStableSlots() {
+        int available = this.blockSize - this.getHeaderSize();
+        int factor = available * Byte.SIZE / (this.recordSize * Byte.SIZE + 1);
+        while (factor > 0 && factor * this.recordSize + bitmapSize(factor) > available) {
+            factor--;
+        }
+        this.blockFactor = factor;
+        this.records = new IRecord[this.blockFactor];
+        this.slotBitmap = new byte[bitmapSize(this.blockFactor)];
+    }
+
+    public SlotMode getSlotMode() {
+        return this.slotBitmap != null ? SlotMode.STABLE : SlotMode.SWAP_LAST;
+    }
+
+    private static int bitmapSize(int slots) {
+        return (slots + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    // Vráti blok do stavu po vytvorení, polia stránky a vlastnené záznamy ostávajú na ďalšie použitie
+    protected void reset() {
+        this.clearBlock();
+        this.pageLoaded = false;
     }
 
     @Override
     public byte[] toByteArray() {
-        ByteArrayOutputStream hlpByteArrayOutputStream = new ByteArrayOutputStream();
-        DataOutputStream hlpOutStream = new DataOutputStream(hlpByteArrayOutputStream);
+        ByteBuffer buffer = ByteBuffer.allocate(this.blockSize);
+        this.writeTo(buffer);
+        return buffer.array();
+    }
+
+    @Override
+    public T readFrom(ByteBuffer buffer) {
+        this.clearBlock();
+        int start = buffer.position();
+        try {
+            this.readHeader(buffer);
+            if (this.page == null) {
+                this.page = new byte[this.blockSize];
+                this.pageView = ByteBuffer.wrap(this.page);
+            }
+            buffer.get(start, this.page, 0, this.blockSize);
+            buffer.position(start + this.blockSize);
+            this.pageLoaded = true;
+            if (this.slotBitmap != null) {
+                System.arraycopy(this.page, this.blockSize - this.slotBitmap.length, this.slotBitmap, 0, this.slotBitmap.length);
+            }
+            return null;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Cannot deserialize record", e);
+        }
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
         try {
-            hlpOutStream.writeInt(this.validCount);
+            this.writeHeader(buffer);
             for (int i = 0; i < this.blockFactor; i++) {
                 if (this.records[i] != null) {
-                    hlpOutStream.write(this.records[i].toByteArray());
+                    this.records[i].writeTo(buffer, this.recordFormat);
+                } else if (this.isEncoded(i)) {
+                    buffer.put(this.page, this.slotOffset(i), this.recordSize);
                 } else {
-                    hlpOutStream.write(new byte[this.recordSize]);
+                    putZeros(buffer, this.recordSize);
                 }
             }
-            int currentSize = hlpByteArrayOutputStream.size();
-            if (currentSize < this.blockSize) {
-                hlpOutStream.write(new byte[this.blockSize - currentSize]);
+            if (this.slotBitmap != null) {
+                putZeros(buffer, start + this.blockSize - this.slotBitmap.length - buffer.position());
+                buffer.put(this.slotBitmap);
             }
-            return hlpByteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
+            putZeros(buffer, start + this.blockSize - buffer.position());
+        } catch (BufferOverflowException e) {
             throw new IllegalStateException("Cannot serialize record", e);
         }
     }
 
+    protected void readHeader(ByteBuffer buffer) {
+        this.validCount = buffer.getInt();
+    }
+
+    protected void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(this.validCount);
+    }
+
+    private static void putZeros(ByteBuffer buffer, int count) {
+        int i = 0;
+        for (; i + Long.BYTES <= count; i += Long.BYTES) {
+            buffer.putLong(0L);
+        }
+        for (; i < count; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
     @Override
     public int getSize() {
         return this.blockSize;
     }
 
     public IRecord<T> getRecordAt(int index) {
+        if (this.isEncoded(index)) {
+            if (this.owned == null) {
+                this.owned = new IRecord[this.blockFactor];
+            }
+            if (this.owned[index] == null) {
+                this.owned[index] = this.recordFactory.get();
+            }
+            this.pageView.clear().position(this.slotOffset(index));
+            this.records[index] = this.owned[index].readFrom(this.pageView, this.recordFormat);
+        }
         return this.records[index];
     }
 
-
-    public T getCopyOfRecord(T record) {
-        for (int i = 0; i < this.blockFactor; i++) {
+    // Kľúč sa pri nedekódovaných slotoch porovnáva priamo s bajtmi stránky, dekóduje sa len nájdený záznam
+    public int indexOf(T record) {
+        int slotCount = this.getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
             IRecord<T> currentRecord = this.records[i];
-            if (currentRecord != null && currentRecord.isEqual(record)) {
-                return currentRecord.createCopy();
+            if (currentRecord != null) {
+                if (currentRecord.isEqual(record)) {
+                    return i;
+                }
+            } else if (this.isEncoded(i) && record.isEqualEncoded(this.pageView, this.slotOffset(i), this.recordFormat)) {
+                return i;
             }
         }
-        return null;
+        return -1;
+    }
+
+    public T getCopyOfRecord(T record) {
+        int index = this.indexOf(record);
+        if (index == -1) {
+            return null;
+        }
+        return this.getRecordAt(index).createCopy();
     }
 
-    public void addRecord(T record) {
+    // Nedekódovaný slot sa sprístupní priamo zo stránky, dekódovaný sa zakóduje do pomocného buffera bloku
+    public <V extends IRecordView<T>> V viewAt(int index, V view) {
+        if (this.isEncoded(index)) {
+            view.wrap(this.pageView, this.slotOffset(index), this.recordFormat);
+            return view;
+        }
+        if (this.scratch == null) {
+            this.scratch = ByteBuffer.allocate(this.recordSize);
+        }
+        this.scratch.clear();
+        this.records[index].writeTo(this.scratch, this.recordFormat);
+        view.wrap(this.scratch, 0, this.recordFormat);
+        return view;
+    }
+
+    protected boolean isEncoded(int index) {
+        return this.records[index] == null && this.pageLoaded && this.isSlotUsed(index);
+    }
+
+    // Počet slotov, ktoré treba pri prechode bloku prezrieť; v režime STABLE môžu byť medzi nimi voľné
+    public int getSlotCount() {
+        return this.slotBitmap != null ? this.blockFactor : this.validCount;
+    }
+
+    public boolean isSlotUsed(int index) {
+        if (this.slotBitmap != null) {
+            return (this.slotBitmap[index >>> 3] & (1 << (index & 7))) != 0;
+        }
+        return index < this.validCount;
+    }
+
+    protected int slotOffset(int index) {
+        return this.getHeaderSize() + index * this.recordSize;
+    }
+
+    // Vráti slot, do ktorého sa záznam uložil, alebo -1, ak je blok plný
+    public int addRecord(T record) {
         if (this.validCount >= this.blockFactor) {
-            return;
+            return -1;
+        }
+        int slot = this.validCount;
+        if (this.slotBitmap != null) {
+            slot = this.firstFreeSlot();
+            this.slotBitmap[slot >>> 3] |= (byte) (1 << (slot & 7));
         }
-        this.records[this.validCount] = record;
+        this.records[slot] = record;
         this.validCount++;
+        return slot;
+    }
+
+    private int firstFreeSlot() {
+        for (int i = 0; i < this.slotBitmap.length; i++) {
+            int free = ~this.slotBitmap[i] & 0xFF;
+            if (free != 0) {
+                return i * Byte.SIZE + Integer.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
     }
 
+    public void updateRecordAt(int r, T newRecord) {
+        this.records[r] = newRecord;
+    }
 
     public T removeRecord(T record) {
-        for (int i = 0; i < this.blockFactor; i++) {
-            IRecord<T> currentRecord = this.records[i];
-            if (currentRecord != null && currentRecord.isEqual(record)) {
-                T copy = currentRecord.createCopy();
-                this.validCount--;
-                this.compact(i, copy);
-                return copy;
-            }
+        int index = this.indexOf(record);
+        if (index == -1) {
+            return null;
         }
-        return null;
+        return this.removeAt(index);
     }
 
-    private void compact(int removedIndex, T recordCopy) {
-        for (int i = removedIndex; i < this.validCount; i++) {
-            this.records[i] = this.records[i + 1];
+    // SWAP_LAST presunie posledný záznam do uvoľneného slotu, STABLE slot iba označí ako voľný
+    public T removeAt(int index) {
+        if (index < 0 || index >= this.blockFactor || !this.isSlotUsed(index)) {
+            return null;
+        }
+        T copy = this.getRecordAt(index).createCopy();
+        if (this.slotBitmap != null) {
+            this.slotBitmap[index >>> 3] &= (byte) ~(1 << (index & 7));
+            this.records[index] = null;
+            this.validCount--;
+            return copy;
         }
-        this.records[this.validCount] = recordCopy;
+        int last = this.validCount - 1;
+        if (index != last) {
+            this.records[index] = this.getRecordAt(last);
+        }
+        this.validCount--;
+        // kópia zmazaného záznamu ostáva za platnými slotmi, tak ako pri pôvodnom posúvaní
+        this.records[last] = copy;
+        return copy;
     }
 
     public void printRecords() {
         for (int i = 0; i < this.blockFactor; i++) {
-            IRecord<T> currentRecord = this.records[i];
+            IRecord<T> currentRecord = this.getRecordAt(i);
             if (currentRecord != null) {
                 System.out.println(currentRecord);
             }
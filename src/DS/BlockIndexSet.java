@@ -0,0 +1,171 @@
+package DS;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class BlockIndexSet {
+    private long[] words;
+    private long[] summary;
+    private int size;
+    private int lowestHint;
+
+    public BlockIndexSet() {
+        this.words = new long[1];
+        this.summary = new long[1];
+        this.size = 0;
+        this.lowestHint = Integer.MAX_VALUE;
+    }
+
+    public boolean add(int index) {
+        this.ensureCapacity(index);
+        int w = index >>> 6;
+        long bit = 1L << index;
+        if ((this.words[w] & bit) != 0) {
+            return false;
+        }
+        this.words[w] |= bit;
+        this.summary[w >>> 6] |= 1L << w;
+        this.size++;
+        if (index < this.lowestHint) {
+            this.lowestHint = index;
+        }
+        return true;
+    }
+
+    public boolean remove(int index) {
+        int w = index >>> 6;
+        if (index < 0 || w >= this.words.length) {
+            return false;
+        }
+        long bit = 1L << index;
+        if ((this.words[w] & bit) == 0) {
+            return false;
+        }
+        this.words[w] &= ~bit;
+        if (this.words[w] == 0) {
+            this.summary[w >>> 6] &= ~(1L << w);
+        }
+        this.size--;
+        return true;
+    }
+
+    public boolean contains(int index) {
+        int w = index >>> 6;
+        return index >= 0 && w < this.words.length && (this.words[w] & (1L << index)) != 0;
+    }
+
+    public int first() {
+        if (this.size == 0) {
+            return -1;
+        }
+        // pod lowestHint nie je žiadny nastavený bit, hľadanie preto pokračuje od neho
+        this.lowestHint = this.nextSetBit(this.lowestHint);
+        return this.lowestHint;
+    }
+
+    public int removeFirst() {
+        int index = this.first();
+        if (index != -1) {
+            this.remove(index);
+        }
+        return index;
+    }
+
+    public int nextSetBit(int fromIndex) {
+        int w = fromIndex >>> 6;
+        if (fromIndex < 0 || w >= this.words.length) {
+            return -1;
+        }
+        long word = this.words[w] & (-1L << fromIndex);
+        if (word != 0) {
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        int nextWord = w + 1;
+        int s = nextWord >>> 6;
+        if (s >= this.summary.length) {
+            return -1;
+        }
+        long summaryWord = this.summary[s] & (-1L << nextWord);
+        while (summaryWord == 0) {
+            if (++s >= this.summary.length) {
+                return -1;
+            }
+            summaryWord = this.summary[s];
+        }
+        int wordIndex = (s << 6) + Long.numberOfTrailingZeros(summaryWord);
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(this.words[wordIndex]);
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = this.nextSetBit(0); i != -1; i = this.nextSetBit(i + 1)) {
+            action.accept(i);
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.words, 0L);
+        Arrays.fill(this.summary, 0L);
+        this.size = 0;
+        this.lowestHint = Integer.MAX_VALUE;
+    }
+
+    public int getEncodedSize() {
+        return Integer.BYTES + this.usedWords() * Long.BYTES;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        int usedWords = this.usedWords();
+        buffer.putInt(usedWords);
+        for (int w = 0; w < usedWords; w++) {
+            buffer.putLong(this.words[w]);
+        }
+    }
+
+    public void readFrom(ByteBuffer buffer) {
+        int usedWords = buffer.getInt();
+        this.words = new long[Math.max(1, usedWords)];
+        this.summary = new long[(this.words.length + 63) >>> 6];
+        this.size = 0;
+        this.lowestHint = Integer.MAX_VALUE;
+        for (int w = 0; w < usedWords; w++) {
+            long word = buffer.getLong();
+            this.words[w] = word;
+            if (word != 0) {
+                this.summary[w >>> 6] |= 1L << w;
+                this.size += Long.bitCount(word);
+                if (this.lowestHint == Integer.MAX_VALUE) {
+                    this.lowestHint = (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+    }
+
+    private int usedWords() {
+        int usedWords = this.words.length;
+        while (usedWords > 0 && this.words[usedWords - 1] == 0) {
+            usedWords--;
+        }
+        return usedWords;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Block index must be >= 0");
+        }
+        int w = index >>> 6;
+        if (w >= this.words.length) {
+            int newLength = Math.max(this.words.length * 2, w + 1);
+            this.words = Arrays.copyOf(this.words, newLength);
+            this.summary = Arrays.copyOf(this.summary, (newLength + 63) >>> 6);
+        }
+    }
+}
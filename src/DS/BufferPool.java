@@ -0,0 +1,367 @@
+package DS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Pool môžu zdieľať súbory používané z viacerých vlákien, stav poolu je preto chránený monitorom.
+// Stránky sa držia zakódované (kópia pri vložení aj pri čítaní), žiadny volajúci teda nezmení stránku v poole na mieste.
+// Zápis stránky späť (aj s čakaním na log) beží mimo monitora, rámec je počas neho pripnutý.
+public class BufferPool {
+    private final int capacity;
+    private final Frame[] frames;
+    private final HashMap<Long, Integer> pageTable;
+    private int clockHand;
+    private int nextFileId;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    private static class Frame {
+        private HeapFile<?, ?> owner;
+        private int fileId;
+        private int blockIndex;
+        private byte[] image;
+        private int pinCount;
+        private boolean dirty;
+        private boolean referenced;
+        private boolean writing;
+        private long version;
+        private long lsn;
+    }
+
+    // Obsah rámca zachytený pod monitorom pre zápis späť mimo neho
+    private static class PendingWrite {
+        private final Frame frame;
+        private final HeapFile<?, ?> owner;
+        private final int blockIndex;
+        private final byte[] image;
+        private final long lsn;
+        private final long version;
+
+        private PendingWrite(Frame frame) {
+            this.frame = frame;
+            this.owner = frame.owner;
+            this.blockIndex = frame.blockIndex;
+            this.image = frame.image;
+            this.lsn = frame.lsn;
+            this.version = frame.version;
+        }
+    }
+
+    public BufferPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer pool capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.frames = new Frame[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.frames[i] = new Frame();
+        }
+        this.pageTable = new HashMap<>(capacity * 2);
+        this.clockHand = 0;
+        this.nextFileId = 0;
+    }
+
+    synchronized int registerFile() {
+        return this.nextFileId++;
+    }
+
+    // Vráti zakódovanú stránku, pole sa po vložení už nemení a volajúci ho nesmie meniť
+    synchronized byte[] get(int fileId, int blockIndex) {
+        Integer slot = this.pageTable.get(key(fileId, blockIndex));
+        if (slot == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        Frame frame = this.frames[slot];
+        frame.referenced = true;
+        return frame.image;
+    }
+
+    synchronized boolean contains(int fileId, int blockIndex) {
+        return this.pageTable.containsKey(key(fileId, blockIndex));
+    }
+
+    void put(HeapFile<?, ?> owner, int fileId, int blockIndex, byte[] image, boolean dirty) {
+        this.put(owner, fileId, blockIndex, image, dirty, 0);
+    }
+
+    // lsn je pozícia v logu, ktorá musí byť trvalá skôr, ako sa stránka zapíše späť;
+    // špinavá obeť sa zapíše mimo monitora a výber rámca sa potom zopakuje
+    void put(HeapFile<?, ?> owner, int fileId, int blockIndex, byte[] image, boolean dirty, long lsn) {
+        while (true) {
+            PendingWrite pending;
+            synchronized (this) {
+                long key = key(fileId, blockIndex);
+                Integer slot = this.pageTable.get(key);
+                if (slot == null) {
+                    slot = this.findVictim();
+                    Frame victim = this.frames[slot];
+                    if (victim.dirty) {
+                        pending = this.startWriteBack(victim);
+                        slot = null;
+                    } else {
+                        if (victim.image != null) {
+                            this.clearFrame(victim);
+                            this.evictions++;
+                        }
+                        victim.owner = owner;
+                        victim.fileId = fileId;
+                        victim.blockIndex = blockIndex;
+                        this.pageTable.put(key, slot);
+                        pending = null;
+                    }
+                } else {
+                    pending = null;
+                }
+                if (slot != null) {
+                    Frame frame = this.frames[slot];
+                    frame.dirty = frame.dirty || dirty;
+                    frame.lsn = Math.max(frame.lsn, lsn);
+                    frame.image = image;
+                    frame.version++;
+                    frame.referenced = true;
+                    return;
+                }
+            }
+            this.writeBack(pending);
+        }
+    }
+
+    synchronized boolean pin(int fileId, int blockIndex) {
+        Integer slot = this.pageTable.get(key(fileId, blockIndex));
+        if (slot == null) {
+            return false;
+        }
+        this.frames[slot].pinCount++;
+        return true;
+    }
+
+    synchronized void unpin(int fileId, int blockIndex, boolean dirty) {
+        Integer slot = this.pageTable.get(key(fileId, blockIndex));
+        if (slot == null) {
+            return;
+        }
+        Frame frame = this.frames[slot];
+        if (frame.pinCount > 0) {
+            frame.pinCount--;
+        }
+        frame.dirty = frame.dirty || dirty;
+    }
+
+    void flush(int fileId) {
+        this.flushFrames(fileId);
+    }
+
+    // Zahodí stránky za koncom súboru bez zápisu, inak by zápis späť súbor opäť predĺžil;
+    // rozpísaný zápis takej stránky sa musí najprv dokončiť
+    synchronized void discardFrom(int fileId, int firstBlockIndex) {
+        this.awaitWrites(fileId, firstBlockIndex);
+        for (int i = 0; i < this.capacity; i++) {
+            Frame frame = this.frames[i];
+            if (frame.image != null && frame.fileId == fileId && frame.blockIndex >= firstBlockIndex) {
+                this.clearFrame(frame);
+            }
+        }
+    }
+
+    void release(int fileId) {
+        this.flushFrames(fileId);
+        synchronized (this) {
+            this.awaitWrites(fileId, 0);
+            for (Frame frame : this.frames) {
+                if (frame.image != null && frame.fileId == fileId) {
+                    this.clearFrame(frame);
+                }
+            }
+        }
+    }
+
+    public void flushAll() {
+        this.flushFrames(-1);
+    }
+
+    // Špinavé rámce (fileId < 0 znamená všetky súbory) sa zapíšu po dávkach mimo monitora,
+    // kým neostane žiadny špinavý ani rozpísaný rámec
+    private void flushFrames(int fileId) {
+        while (true) {
+            ArrayList<PendingWrite> pending = new ArrayList<>();
+            synchronized (this) {
+                boolean inFlight = false;
+                for (Frame frame : this.frames) {
+                    if (frame.image == null || !frame.dirty || (fileId >= 0 && frame.fileId != fileId)) {
+                        continue;
+                    }
+                    if (frame.writing) {
+                        inFlight = true;
+                    } else {
+                        pending.add(this.startWriteBack(frame));
+                    }
+                }
+                if (pending.isEmpty()) {
+                    if (!inFlight) {
+                        return;
+                    }
+                    this.awaitAnyWrite();
+                    continue;
+                }
+            }
+            for (PendingWrite write : pending) {
+                this.writeBack(write);
+            }
+        }
+    }
+
+    private int findVictim() {
+        // CLOCK: prvý prechod zmaže referenčné bity, druhý nájde obeť, tretí potvrdí že sú všetky pripnuté;
+        // ak niektoré rámce práve idú na disk, počká sa na ne a hľadá sa znova
+        while (true) {
+            boolean inFlight = false;
+            for (int step = 0; step < 3 * this.capacity; step++) {
+                int slot = this.clockHand;
+                this.clockHand = (this.clockHand + 1) % this.capacity;
+                Frame frame = this.frames[slot];
+                if (frame.image == null) {
+                    return slot;
+                }
+                if (frame.writing) {
+                    inFlight = true;
+                    continue;
+                }
+                if (frame.pinCount > 0) {
+                    continue;
+                }
+                if (frame.referenced) {
+                    frame.referenced = false;
+                    continue;
+                }
+                if (frame.dirty) {
+                    // po zápise späť sa hľadanie začne opäť na tomto rámci
+                    this.clockHand = slot;
+                }
+                return slot;
+            }
+            if (!inFlight) {
+                throw new IllegalStateException("All buffer pool frames are pinned");
+            }
+            this.awaitAnyWrite();
+        }
+    }
+
+    private PendingWrite startWriteBack(Frame frame) {
+        frame.writing = true;
+        return new PendingWrite(frame);
+    }
+
+    // Volá sa bez monitora; rámec ostane špinavý, ak sa stránka medzičasom zmenila
+    private void writeBack(PendingWrite write) {
+        boolean written = false;
+        try {
+            write.owner.writeBack(write.blockIndex, write.image, write.lsn);
+            written = true;
+        } finally {
+            synchronized (this) {
+                Frame frame = write.frame;
+                frame.writing = false;
+                if (written) {
+                    this.writeBacks++;
+                    if (frame.version == write.version) {
+                        frame.dirty = false;
+                        frame.lsn = 0;
+                    }
+                }
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void awaitWrites(int fileId, int firstBlockIndex) {
+        while (true) {
+            boolean inFlight = false;
+            for (Frame frame : this.frames) {
+                if (frame.writing && frame.fileId == fileId && frame.blockIndex >= firstBlockIndex) {
+                    inFlight = true;
+                    break;
+                }
+            }
+            if (!inFlight) {
+                return;
+            }
+            this.awaitAnyWrite();
+        }
+    }
+
+    private void awaitAnyWrite() {
+        try {
+            this.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for buffer pool write-back", e);
+        }
+    }
+
+    private void clearFrame(Frame frame) {
+        this.pageTable.remove(key(frame.fileId, frame.blockIndex));
+        frame.owner = null;
+        frame.image = null;
+        frame.pinCount = 0;
+        frame.dirty = false;
+        frame.referenced = false;
+        frame.writing = false;
+        frame.lsn = 0;
+    }
+
+    private static long key(int fileId, int blockIndex) {
+        return ((long) fileId << 32) | (blockIndex & 0xFFFFFFFFL);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public synchronized int getUsedFrames() {
+        return this.pageTable.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized long getWriteBacks() {
+        return this.writeBacks;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0.0 : (double) this.hits / total;
+    }
+
+    public synchronized void resetStatistics() {
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+        this.writeBacks = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool{" +
+                "capacity=" + this.capacity +
+                ", used=" + this.getUsedFrames() +
+                ", hits=" + this.hits +
+                ", misses=" + this.misses +
+                ", evictions=" + this.evictions +
+                ", writeBacks=" + this.writeBacks +
+                '}';
+    }
+}
@@ -1,73 +1,144 @@
 package DS;
+import Interface.IHashable;
 import Interface.IRecord;
 
-import java.io.*;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
 
 public class ChainedBlock<T extends IRecord<T>> extends Block<T> {
+    private static final int FIXED_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int SUMMARY_OFFSET = FIXED_HEADER_SIZE;
+    private static final int FINGERPRINTS_OFFSET = SUMMARY_OFFSET + Long.BYTES;
     private int nextBlockIndex;
+    // Odtlačky sú voliteľné, hlavička potom obsahuje 64-bitový súhrn bloku a 1 bajt z getHash pre každý slot
+    private boolean fingerprints;
 
     public ChainedBlock(Class<T> recordType, int sizeOfBlock) {
         super(recordType, sizeOfBlock);
         this.nextBlockIndex = -1;
-        int actualSizeForRecords = this.blockSize - (2 * Integer.BYTES);
-        this.blockFactor = actualSizeForRecords / this.recordSize;
+    }
+
+    public ChainedBlock(Supplier<T> recordFactory, int sizeOfBlock) {
+        super(recordFactory, sizeOfBlock);
+        this.nextBlockIndex = -1;
+    }
+
+    public ChainedBlock(Supplier<T> recordFactory, int recordSize, int sizeOfBlock) {
+        super(recordFactory, recordSize, sizeOfBlock);
+        this.nextBlockIndex = -1;
+    }
+
+    public ChainedBlock(Supplier<T> recordFactory, int recordSize, int sizeOfBlock, RecordFormat recordFormat) {
+        super(recordFactory, recordSize, sizeOfBlock, recordFormat);
+        this.nextBlockIndex = -1;
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        this.nextBlockIndex = -1;
+    }
+
+    // Reťazenie a rozdeľovanie bucketov počítajú so súvislými slotmi 0..validCount-1
+    @Override
+    public void enableStableSlots() {
+        throw new IllegalStateException("Chained blocks do not support stable slots");
+    }
+
+    // Volá sa hneď po vytvorení prázdneho bloku, pretože mení blokovací faktor
+    public void enableFingerprints() {
+        if (!(this.recordFactory.get() instanceof IHashable)) {
+            throw new IllegalStateException("Fingerprints require records implementing IHashable");
+        }
+        this.fingerprints = true;
+        this.blockFactor = (this.blockSize - FINGERPRINTS_OFFSET) / (this.recordSize + 1);
         this.records = new IRecord[this.blockFactor];
     }
 
+    public boolean hasFingerprints() {
+        return this.fingerprints;
+    }
+
     @Override
-    public T fromByteArray(byte[] bytesArray) {
-        this.clearBlock();
-        ByteArrayInputStream hlpByteArrayInputStream = new ByteArrayInputStream(bytesArray);
-        DataInputStream hlpInStream = new DataInputStream(hlpByteArrayInputStream);
-        try {
-            this.validCount = hlpInStream.readInt();
-            this.nextBlockIndex = hlpInStream.readInt();
-            for (int i = 0; i < this.blockFactor; i++) {
-                byte[] recordBytes = new byte[this.recordSize];
-                hlpInStream.read(recordBytes);
-                T recordInstance = this.recordType.getDeclaredConstructor().newInstance();
-                IRecord<T> record = recordInstance.fromByteArray(recordBytes);
-                this.records[i] = record;
-            }
-            return null;
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot deserialize record", e);
-        } catch (InstantiationException e) {
-            throw new IllegalStateException("Cannot instantiate record type", e);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
-            throw new RuntimeException(e);
+    protected int getHeaderSize() {
+        if (this.fingerprints) {
+            return FINGERPRINTS_OFFSET + this.blockFactor;
         }
+        return FIXED_HEADER_SIZE;
     }
 
     @Override
-    protected void clearBlock() {
-        super.clearBlock();
-        this.nextBlockIndex = -1;
+    protected void readHeader(ByteBuffer buffer) {
+        super.readHeader(buffer);
+        this.nextBlockIndex = buffer.getInt();
     }
 
     @Override
-    public byte[] toByteArray() {
-        ByteArrayOutputStream hlpByteArrayOutputStream = new ByteArrayOutputStream();
-        DataOutputStream hlpOutStream = new DataOutputStream(hlpByteArrayOutputStream);
-        try {
-            hlpOutStream.writeInt(this.validCount);
-            hlpOutStream.writeInt(this.nextBlockIndex);
-            for (int i = 0; i < this.blockFactor; i++) {
-                if (this.records[i] != null) {
-                    hlpOutStream.write(this.records[i].toByteArray());
-                } else {
-                    hlpOutStream.write(new byte[this.recordSize]);
-                }
+    protected void writeHeader(ByteBuffer buffer) {
+        super.writeHeader(buffer);
+        buffer.putInt(this.nextBlockIndex);
+        if (!this.fingerprints) {
+            return;
+        }
+        int summaryPosition = buffer.position();
+        buffer.putLong(0L);
+        long summary = 0L;
+        for (int i = 0; i < this.blockFactor; i++) {
+            byte fingerprint = 0;
+            if (this.records[i] != null && i < this.validCount) {
+                fingerprint = fingerprintOf(((IHashable) this.records[i]).getHash());
+            } else if (this.isEncoded(i)) {
+                fingerprint = this.page[FINGERPRINTS_OFFSET + i];
             }
-            int currentSize = hlpByteArrayOutputStream.size();
-            if (currentSize < this.blockSize) {
-                hlpOutStream.write(new byte[this.blockSize - currentSize]);
+            if (i < this.validCount) {
+                summary |= summaryBitOf(fingerprint);
             }
-            return hlpByteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot serialize record", e);
+            buffer.put(fingerprint);
         }
+        buffer.putLong(summaryPosition, summary);
+    }
+
+    // Nedekódované sloty sa porovnajú až vtedy, keď súhrn bloku aj odtlačok slotu zodpovedajú hľadanému záznamu
+    @Override
+    public int indexOf(T record) {
+        if (!this.fingerprints) {
+            return super.indexOf(record);
+        }
+        byte fingerprint = fingerprintOf(((IHashable) record).getHash());
+        boolean pageMayContain = this.pageLoaded && (this.pageSummary() & summaryBitOf(fingerprint)) != 0;
+        for (int i = 0; i < this.validCount; i++) {
+            IRecord<T> currentRecord = this.records[i];
+            if (currentRecord != null) {
+                if (currentRecord.isEqual(record)) {
+                    return i;
+                }
+            } else if (pageMayContain && this.isEncoded(i)
+                    && this.page[FINGERPRINTS_OFFSET + i] == fingerprint
+                    && record.isEqualEncoded(this.pageView, this.slotOffset(i), this.recordFormat)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long pageSummary() {
+        return this.pageView.getLong(SUMMARY_OFFSET);
+    }
+
+    // Horný bajt premiešaného hashu, nezávislý od nízkych bitov použitých na adresovanie bucketu
+    private static byte fingerprintOf(long hash) {
+        return (byte) ((hash * 0x9E3779B97F4A7C15L) >>> 56);
+    }
+
+    // Súhrn sa dá odvodiť z odtlačkov, takže sa pri zápise nemusí nič dekódovať
+    private static long summaryBitOf(byte fingerprint) {
+        return 1L << (fingerprint & 63);
+    }
+
+    @Override
+    protected void clearBlock() {
+        super.clearBlock();
+        this.nextBlockIndex = -1;
     }
 
     public int getNextBlockIndex() {
@@ -87,18 +158,12 @@ public class ChainedBlock<T extends IRecord<T>> extends Block<T> {
         return this.blockFactor;
     }
 
-    public void updateRecordAt(int r, T newRecord) {
-        this.records[r] = newRecord;
-    }
-
     public boolean updateRecord(T newRecord) {
-        for (int i = 0; i < this.blockFactor; i++) {
-            T currentRecord = (T) this.records[i];
-            if (currentRecord != null && currentRecord.isEqual(newRecord)) {
-                this.records[i] = newRecord;
-                return true;
-            }
+        int index = this.indexOf(newRecord);
+        if (index == -1) {
+            return false;
         }
-        return false;
+        this.records[index] = newRecord;
+        return true;
     }
 }
@@ -0,0 +1,77 @@
+package DS;
+
+import Interface.IBlockStorage;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public class ChannelBlockStorage implements IBlockStorage {
+    private final File file;
+    private final FileChannel channel;
+
+    public ChannelBlockStorage(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void read(ByteBuffer destination, long position) throws IOException {
+        long start = position - destination.position();
+        while (destination.hasRemaining()) {
+            if (this.channel.read(destination, start + destination.position()) < 0) {
+                throw new EOFException("Position " + position + " is beyond the end of " + this.file.getName());
+            }
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer source, long position) throws IOException {
+        long start = position - source.position();
+        while (source.hasRemaining()) {
+            this.channel.write(source, start + source.position());
+        }
+    }
+
+    // FileChannel nemá pozičný zber zápisov, preto sa pozícia kanála nastaví pred zápisom
+    @Override
+    public synchronized void write(ByteBuffer[] sources, long position) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer source : sources) {
+            remaining += source.remaining();
+        }
+        this.channel.position(position);
+        while (remaining > 0) {
+            remaining -= this.channel.write(sources);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return this.channel.size();
+    }
+
+    @Override
+    public void truncate(long size) throws IOException {
+        this.channel.truncate(size);
+    }
+
+    @Override
+    public void force() throws IOException {
+        this.channel.force(true);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,13 @@
+package DS;
+
+public enum DurabilityMode {
+    // zápisy ostávajú v cache operačného systému, nič sa nevynucuje ani pri zatvorení
+    NONE,
+    // dáta a metadáta sa vynútia na disk iba pri close()
+    FLUSH_ON_CLOSE,
+    // po každej operácii sa zapíšu špinavé stránky, metadáta a zavolá sa force
+    FSYNC_PER_OPERATION,
+    // ako FSYNC_PER_OPERATION, ale najviac raz za interval; prvá zmena po synchronizácii naplánuje sync na pozadí,
+    // takže zmena je na disku najneskôr po intervale aj keď už žiadna ďalšia operácia nepríde
+    FSYNC_EVERY_N_MS
+}
@@ -0,0 +1,120 @@
+package DS;
+
+import java.nio.ByteBuffer;
+
+// Čiastočne zaplnené bloky roztriedené do košov podľa počtu platných záznamov, posledný kôš obsahuje najplnšie bloky
+class FreeSpaceMap {
+    static final int MAX_BINS = 32;
+
+    private BlockIndexSet[] bins;
+    private int blockFactor;
+    // false, ak koše nepoznajú zaplnenie všetkých blokov (metadáta zo staršej verzie alebo zmena rozloženia)
+    private boolean complete;
+
+    FreeSpaceMap() {
+        this.bins = new BlockIndexSet[0];
+        this.complete = true;
+    }
+
+    // Pri rovnakom počte košov sa načítané koše ponechajú, inak ich treba zostaviť znova z blokov
+    void configure(int blockFactor) {
+        int binCount = binCount(blockFactor);
+        this.blockFactor = blockFactor;
+        if (binCount != this.bins.length) {
+            this.bins = newBins(binCount);
+            this.complete = false;
+        }
+    }
+
+    void update(int index, int validCount) {
+        int target = validCount > 0 && validCount < this.blockFactor ? this.binOf(validCount) : -1;
+        if (target != -1 && this.bins[target].contains(index)) {
+            return;
+        }
+        this.remove(index);
+        if (target != -1) {
+            this.bins[target].add(index);
+        }
+    }
+
+    void remove(int index) {
+        for (BlockIndexSet bin : this.bins) {
+            if (bin.remove(index)) {
+                return;
+            }
+        }
+    }
+
+    // Blok s najnižším indexom v najplnšom neprázdnom koši, -1 ak nie je žiadny čiastočne zaplnený blok
+    int fullest() {
+        for (int b = this.bins.length - 1; b >= 0; b--) {
+            int index = this.bins[b].first();
+            if (index != -1) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        int size = 0;
+        for (BlockIndexSet bin : this.bins) {
+            size += bin.size();
+        }
+        return size;
+    }
+
+    void clear() {
+        for (BlockIndexSet bin : this.bins) {
+            bin.clear();
+        }
+        this.complete = true;
+    }
+
+    boolean isComplete() {
+        return this.complete;
+    }
+
+    int getEncodedSize() {
+        int size = Integer.BYTES;
+        for (BlockIndexSet bin : this.bins) {
+            size += bin.getEncodedSize();
+        }
+        return size;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(this.complete ? this.bins.length : 0);
+        if (!this.complete) {
+            return;
+        }
+        for (BlockIndexSet bin : this.bins) {
+            bin.writeTo(buffer);
+        }
+    }
+
+    void readFrom(ByteBuffer buffer) {
+        int binCount = buffer.getInt();
+        this.bins = newBins(binCount);
+        for (BlockIndexSet bin : this.bins) {
+            bin.readFrom(buffer);
+        }
+        this.complete = binCount > 0;
+    }
+
+    private int binOf(int validCount) {
+        return (validCount - 1) * this.bins.length / (this.blockFactor - 1);
+    }
+
+    private static int binCount(int blockFactor) {
+        return Math.max(1, Math.min(MAX_BINS, blockFactor - 1));
+    }
+
+    private static BlockIndexSet[] newBins(int binCount) {
+        BlockIndexSet[] bins = new BlockIndexSet[binCount];
+        for (int i = 0; i < binCount; i++) {
+            bins[i] = new BlockIndexSet();
+        }
+        return bins;
+    }
+}
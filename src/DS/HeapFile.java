@@ -1,47 +1,196 @@
 package DS;
 
+import Interface.IBlockFactory;
+import Interface.IBlockStorage;
 import Interface.IRecord;
+import Interface.IRecordView;
 
 import java.io.*;
-import java.util.*;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
+    private static final int METADATA_MAGIC = 0x48464D44;
+    private static final int METADATA_VERSION = 4;
+    private static final int FLAG_FINGERPRINTS = 1;
+    private static final int FLAG_STABLE_SLOTS = 2;
+    private static final int MAX_SPARE_BLOCKS = 4;
+    private static final int MAX_PENDING_PAGES = 1024;
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "heap-file-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService SYNC_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "heap-file-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final File dataFile;
+    private final File metadataFile;
     private final File emptyBlocksFile;
     private final File partialBlocksFile;
     private final File headerFile;
     private final Class<T> recordClass;
-    private final Class<B> blockClass;
+    private final Supplier<T> recordFactory;
+    private final IBlockFactory<T, B> blockFactory;
     private final int blockSize;
-    private final LinkedList<Integer> emptyBlocks;
-    private final LinkedList<Integer> partiallyEmptyBlocks;
-    private int totalBlocks;
-    private int totalRecords;
+    private int recordSize;
+    private int blockFactor;
+    private RecordFormat recordFormat;
+    private boolean fingerprints;
+    private SlotMode slotMode;
+    private final BlockIndexSet emptyBlocks;
+    private final BlockIndexSet partiallyEmptyBlocks;
+    private final FreeSpaceMap freeSpace;
+    private PlacementPolicy placementPolicy;
+    private volatile int totalBlocks;
+    private volatile int totalRecords;
+    // Zoznamy voľných blokov a počítadlá; pri súbežnom prístupe ich menia vlákna rôznych bucketov
+    private final ReentrantLock allocationLock;
+    private boolean concurrent;
+    private final ByteBuffer readBuffer;
+    private final ByteBuffer writeBuffer;
+    private final StorageMode storageMode;
+    private IBlockStorage storage;
+    private BufferPool bufferPool;
+    private int poolFileId;
+    private WriteAheadLog writeAheadLog;
+    // Zachytávanie patrí jednému vláknu, ostatné vlákna súbežného režimu ho nevidia a čítajú potvrdený stav
+    private Thread captureOwner;
+    private LinkedHashMap<Integer, B> capturedWrites;
+    private int capturedTruncateTo;
+    private int capturedTotalBlocks;
+    private int capturedTotalRecords;
+    // Bez poolu čakajú stránky potvrdených operácií tu, kým nie je ich záznam v logu trvalý, až potom idú na miesto
+    private final LinkedHashMap<Integer, PendingPage> pendingPages;
+    private DurabilityMode durability;
+    private long syncIntervalMs;
+    private long lastSyncTime;
+    // Naplánovaný sync pre FSYNC_EVERY_N_MS, existuje iba kým sú v súbore nesynchronizované zmeny
+    private ScheduledFuture<?> scheduledSync;
+    private RuntimeException syncFailure;
+    private boolean prefetchEnabled;
+    // Recyklované bloky sú viazané na vlákno, pri zmene rozloženia bloku sa celý pool zahodí
+    private ThreadLocal<ArrayDeque<B>> spareBlocks;
+
+    private static class PendingPage {
+        private final byte[] image;
+        private final long lsn;
+
+        private PendingPage(byte[] image, long lsn) {
+            this.image = image;
+            this.lsn = lsn;
+        }
+    }
 
     public HeapFile(String baseFileName, Class<T> recordClass, Class<B> blockClass, int blockSize) {
+        this(baseFileName, recordClass, blockClass, blockSize, StorageMode.CHANNEL);
+    }
+
+    public HeapFile(String baseFileName, Class<T> recordClass, Class<B> blockClass, int blockSize, StorageMode storageMode) {
+        this(baseFileName, recordClass, Block.reflectiveFactory(recordClass), blockFactoryFor(blockClass), blockSize, storageMode);
+    }
+
+    public HeapFile(String baseFileName, Class<T> recordClass, Supplier<T> recordFactory, IBlockFactory<T, B> blockFactory, int blockSize) {
+        this(baseFileName, recordClass, recordFactory, blockFactory, blockSize, StorageMode.CHANNEL);
+    }
+
+    public HeapFile(String baseFileName, Class<T> recordClass, Supplier<T> recordFactory, IBlockFactory<T, B> blockFactory, int blockSize, StorageMode storageMode) {
+        if (storageMode == StorageMode.MEMORY_MAPPED && !MappedBlockStorage.isSupported()) {
+            throw new IllegalStateException("Memory-mapped storage is not supported on this JVM, use CHANNEL");
+        }
         this.dataFile = new File(baseFileName);
+        this.metadataFile = new File(baseFileName + "_meta.bin");
         this.emptyBlocksFile = new File(baseFileName + "_empty.txt");
         this.partialBlocksFile = new File(baseFileName + "_partial.txt");
         this.headerFile = new File(baseFileName + "_header.txt");
         this.recordClass = recordClass;
-        this.blockClass = blockClass;
+        this.recordFactory = recordFactory;
+        this.blockFactory = blockFactory;
         this.blockSize = blockSize;
-        this.emptyBlocks = new LinkedList<>();
-        this.partiallyEmptyBlocks = new LinkedList<>();
+        this.recordFormat = RecordFormat.WIDE;
+        this.slotMode = SlotMode.SWAP_LAST;
+        this.storageMode = storageMode;
+        this.emptyBlocks = new BlockIndexSet();
+        this.partiallyEmptyBlocks = new BlockIndexSet();
+        this.freeSpace = new FreeSpaceMap();
+        this.placementPolicy = PlacementPolicy.FIRST_FIT;
+        this.allocationLock = new ReentrantLock();
+        this.readBuffer = ByteBuffer.allocate(blockSize);
+        this.writeBuffer = ByteBuffer.allocate(blockSize);
+        this.capturedTruncateTo = -1;
+        this.pendingPages = new LinkedHashMap<>();
+        this.durability = DurabilityMode.FLUSH_ON_CLOSE;
+        this.lastSyncTime = System.currentTimeMillis();
         if (this.dataFile.exists()) {
-            this.loadLists();
-            this.loadHeader();
-        } else {
-            this.saveHeader();
-            this.saveLists();
+            this.loadMetadata();
         }
+        this.updateLayout();
+        if (!this.dataFile.exists()) {
+            this.saveMetadata();
+        } else if (this.placementPolicy != PlacementPolicy.FIRST_FIT && !this.freeSpace.isComplete()) {
+            this.rebuildFreeSpace();
+        }
+    }
+
+    private void updateLayout() {
+        this.recordSize = this.recordFactory.get().getSize(this.recordFormat);
+        this.blockFactor = this.createBlock().getBlockFactor();
+        this.freeSpace.configure(this.blockFactor);
+        if (this.partiallyEmptyBlocks.isEmpty()) {
+            this.freeSpace.clear();
+        }
+        this.spareBlocks = ThreadLocal.withInitial(ArrayDeque::new);
     }
 
     public int insertRecord(T record) {
+        return RecordId.blockIndex(this.insertWithRid(record));
+    }
+
+    // Vloženie s návratom RID; RID ostáva platný až do zmazania záznamu iba v režime SlotMode.STABLE
+    public long insert(T record) {
+        this.requireStableSlots();
+        return this.insertWithRid(record);
+    }
+
+    // Operácie samostatného súboru bežia pod allocationLock, aby sa s nimi nestretol sync z časovača
+    private long insertWithRid(T record) {
+        this.requireEncodable(record);
+        this.allocationLock.lock();
+        try {
+            return this.insertWithRidLocked(record);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private long insertWithRidLocked(T record) {
         int blockIndex;
 
         boolean partiallyEmptyIndex = false;
-        if (!this.partiallyEmptyBlocks.isEmpty()) {
+        int fullest = this.placementPolicy == PlacementPolicy.FULLEST_FIRST ? this.freeSpace.fullest() : -1;
+        if (fullest != -1) {
+            blockIndex = fullest;
+            this.partiallyEmptyBlocks.remove(fullest);
+            partiallyEmptyIndex = true;
+        } else if (!this.partiallyEmptyBlocks.isEmpty()) {
             blockIndex = this.partiallyEmptyBlocks.removeFirst();
             partiallyEmptyIndex = true;
         } else if (!this.emptyBlocks.isEmpty()) {
@@ -50,51 +199,152 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
             blockIndex = this.totalBlocks;
         }
 
-        B block = this.createBlock();
-        if (partiallyEmptyIndex) {
-            block = this.getBlock(blockIndex);
-        }
+        B block = partiallyEmptyIndex ? this.borrowBlock(blockIndex) : this.newBlock();
 
-        block.addRecord(record);
+        int slot = block.addRecord(record);
         this.updateListsAfterInsert(blockIndex, block);
         this.writeBlockToFile(block, blockIndex);
+        this.releaseBlock(block);
         if (blockIndex == this.totalBlocks) {
             this.totalBlocks++;
         }
         this.totalRecords++;
-        return blockIndex;
+        this.afterOperation();
+        return RecordId.of(blockIndex, slot);
+    }
+
+    // Priamy prístup cez RID: prečíta sa jediný blok a dekóduje jediný slot, bez porovnávania kľúčov
+    public T read(long rid) {
+        this.requireStableSlots();
+        int blockIndex = RecordId.blockIndex(rid);
+        if (blockIndex < 0 || blockIndex >= this.totalBlocks) {
+            return null;
+        }
+        B block = this.borrowBlock(blockIndex);
+        int slot = RecordId.slot(rid);
+        T found = this.isValidSlot(block, slot) ? block.getRecordAt(slot).createCopy() : null;
+        this.releaseBlock(block);
+        return found;
+    }
+
+    public boolean update(long rid, T record) {
+        this.requireStableSlots();
+        this.requireEncodable(record);
+        this.allocationLock.lock();
+        try {
+            return this.updateLocked(rid, record);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private boolean updateLocked(long rid, T record) {
+        int blockIndex = RecordId.blockIndex(rid);
+        if (blockIndex < 0 || blockIndex >= this.totalBlocks) {
+            return false;
+        }
+        B block = this.borrowBlock(blockIndex);
+        int slot = RecordId.slot(rid);
+        if (!this.isValidSlot(block, slot)) {
+            this.releaseBlock(block);
+            return false;
+        }
+        block.updateRecordAt(slot, record);
+        this.writeBlockToFile(block, blockIndex);
+        this.releaseBlock(block);
+        this.afterOperation();
+        return true;
+    }
+
+    public T delete(long rid) {
+        this.requireStableSlots();
+        this.allocationLock.lock();
+        try {
+            return this.deleteLocked(rid);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private T deleteLocked(long rid) {
+        int blockIndex = RecordId.blockIndex(rid);
+        if (blockIndex < 0 || blockIndex >= this.totalBlocks) {
+            return null;
+        }
+        B block = this.borrowBlock(blockIndex);
+        T removed = block.removeAt(RecordId.slot(rid));
+        if (removed == null) {
+            this.releaseBlock(block);
+            return null;
+        }
+        this.totalRecords--;
+        this.updateListsAfterDelete(blockIndex, block);
+        this.writeBlockToFile(block, blockIndex);
+        this.releaseBlock(block);
+        this.trimTrailingEmptyBlocks();
+        this.afterOperation();
+        return removed;
+    }
+
+    private boolean isValidSlot(B block, int slot) {
+        return slot >= 0 && slot < block.getBlockFactor() && block.isSlotUsed(slot);
+    }
+
+    // V režime SWAP_LAST zmazanie presúva záznamy medzi slotmi, RID by neukazoval na pôvodný záznam
+    private void requireStableSlots() {
+        if (this.slotMode != SlotMode.STABLE) {
+            throw new IllegalStateException("Record ids require SlotMode.STABLE");
+        }
+    }
+
+    // Kontrola pred zmenou stavu, aby zápis bloku nezlyhal v polovici operácie
+    void requireEncodable(T record) {
+        if (!record.fits(this.recordFormat)) {
+            throw new IllegalArgumentException("Record does not fit " + this.recordFormat + " format: " + record);
+        }
     }
 
     public BlockInsertResult<T> insertRecordWithMetadata(T record,int blockIndex) {
-        ChainedBlock block = (ChainedBlock) this.getBlock(blockIndex);
+        ChainedBlock block = (ChainedBlock) this.borrowBlock(blockIndex);
         if (block.getValidCount() == block.getBlockFactor()) {
             return new BlockInsertResult<>(-1, block); // Indikácia, že blok je plný a nie je možné vložiť záznam
         }
         block.addRecord(record);
-        this.updateListsAfterInsert(blockIndex, (B) block);
         this.writeBlockToFile((B) block, blockIndex);
-        this.totalRecords++;
+        this.allocationLock.lock();
+        try {
+            this.updateListsAfterInsert(blockIndex, (B) block);
+            this.totalRecords++;
+        } finally {
+            this.allocationLock.unlock();
+        }
         return new BlockInsertResult<>(blockIndex, block);
     }
 
+    // Výber bloku aj jeho zápis prebehnú pod zámkom alokácie, blok teda nikdy nedostanú dva reťazce naraz
     public BlockInsertResult<T> insertRecordAsNewBlock(T record) {
-        int blockIndex;
-        // Použiť iba emptyBlocks alebo nový blok na konci
-        if (!this.emptyBlocks.isEmpty()) {
-            blockIndex = this.emptyBlocks.removeFirst();
-        } else {
-            blockIndex = this.totalBlocks;
-        }
-        ChainedBlock block = new ChainedBlock(this.recordClass, this.blockSize);
-        block.addRecord(record);
-        this.updateListsAfterInsert(blockIndex, (B) block);
-        this.writeBlockToFile((B) block, blockIndex);
+        this.allocationLock.lock();
+        try {
+            int blockIndex;
+            // Použiť iba emptyBlocks alebo nový blok na konci
+            if (!this.emptyBlocks.isEmpty()) {
+                blockIndex = this.emptyBlocks.removeFirst();
+            } else {
+                blockIndex = this.totalBlocks;
+            }
+            ChainedBlock block = (ChainedBlock) this.newBlock();
+            block.addRecord(record);
+            this.updateListsAfterInsert(blockIndex, (B) block);
+            this.writeBlockToFile((B) block, blockIndex);
 
-        if (blockIndex == this.totalBlocks) {
-            this.totalBlocks++;
+            if (blockIndex == this.totalBlocks) {
+                this.totalBlocks++;
+            }
+            this.totalRecords++;
+            return new BlockInsertResult<>(blockIndex, block);
+        } finally {
+            this.allocationLock.unlock();
         }
-        this.totalRecords++;
-        return new BlockInsertResult<>(blockIndex, block);
     }
 
     public T findRecord(int index, T record) {
@@ -102,123 +352,534 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
             return null;
         }
 
-        B block = this.getBlock(index);
-        return block.getCopyOfRecord(record);
+        B block = this.borrowBlock(index);
+        T found = block.getCopyOfRecord(record);
+        this.releaseBlock(block);
+        return found;
     }
 
     public T findInChain(int startBlockIndex, T recordTemplate) {
+        return this.findInChain(startBlockIndex, recordTemplate, null);
+    }
+
+    T findInChain(int startBlockIndex, T recordTemplate, CompletableFuture<B> startBlock) {
         int currentIndex = startBlockIndex;
+        CompletableFuture<B> pending = startBlock;
 
         while (currentIndex != -1) {
-            ChainedBlock block = (ChainedBlock) this.getBlock(currentIndex);
+            ChainedBlock block = (ChainedBlock) this.takeBlock(currentIndex, pending);
+            int nextIndex = block.getNextBlockIndex();
+            pending = this.prefetchBlock(nextIndex);
             T found = (T) block.getCopyOfRecord(recordTemplate);
+            this.releaseBlock((B) block);
             if (found != null) {
+                this.cancelPrefetch(pending);
                 return found;
             }
-            currentIndex = block.getNextBlockIndex();
+            currentIndex = nextIndex;
         }
         return null;
     }
 
     public T deleteRecord(int index, T record) {
+        this.allocationLock.lock();
+        try {
+            return this.deleteRecordLocked(index, record);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private T deleteRecordLocked(int index, T record) {
         if (index < 0 || index >= this.totalBlocks) {
             return null;
         }
 
-        B block = this.getBlock(index);
+        B block = this.borrowBlock(index);
         T removed = block.removeRecord(record);
 
         if (removed == null) {
+            this.releaseBlock(block);
             return null;
         }
 
         this.totalRecords--;
         this.updateListsAfterDelete(index, block);
         this.writeBlockToFile(block, index);
+        this.releaseBlock(block);
         this.trimTrailingEmptyBlocks();
+        this.afterOperation();
         return removed;
     }
 
     void updateListsAfterInsert(int index, B block) {
+        this.allocationLock.lock();
+        try {
+            this.updateListsAfterInsertLocked(index, block);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private void updateListsAfterInsertLocked(int index, B block) {
         if (block.getValidCount() == block.getBlockFactor()) {
-            this.partiallyEmptyBlocks.remove(Integer.valueOf(index));
-            this.emptyBlocks.remove(Integer.valueOf(index));
+            this.partiallyEmptyBlocks.remove(index);
+            this.emptyBlocks.remove(index);
         } else if (block.getValidCount() > 0 && block.getValidCount() < block.getBlockFactor()) {
-            if (!this.partiallyEmptyBlocks.contains(index)) {
-                this.partiallyEmptyBlocks.add(index);
-            }
-            this.emptyBlocks.remove(Integer.valueOf(index));
+            this.partiallyEmptyBlocks.add(index);
+            this.emptyBlocks.remove(index);
         } else if (block.getValidCount() == 0) {
-            if (!this.emptyBlocks.contains(index)) {
-                this.emptyBlocks.add(index);
-            }
-            this.partiallyEmptyBlocks.remove(Integer.valueOf(index));
+            this.emptyBlocks.add(index);
+            this.partiallyEmptyBlocks.remove(index);
         }
+        this.freeSpace.update(index, block.getValidCount());
     }
 
     public void updateListsAfterDelete(int index, B block) {
+        this.allocationLock.lock();
+        try {
+            this.updateListsAfterDeleteLocked(index, block);
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private void updateListsAfterDeleteLocked(int index, B block) {
         if (block.getValidCount() == 0) {
             this.emptyBlocks.add(index);
-            this.partiallyEmptyBlocks.remove(Integer.valueOf(index));
+            this.partiallyEmptyBlocks.remove(index);
         } else if (block.getValidCount() < block.getBlockFactor()) {
-            if (!this.partiallyEmptyBlocks.contains(index)) {
-                this.partiallyEmptyBlocks.add(index);
-            }
+            this.partiallyEmptyBlocks.add(index);
         }
+        this.freeSpace.update(index, block.getValidCount());
     }
 
     public void trimTrailingEmptyBlocks() {
-        int last = this.totalBlocks - 1;
+        this.trimTrailingEmptyBlocks(0);
+    }
 
-        while (last >= 0 && this.emptyBlocks.contains(last)) {
-            last--;
+    // Bloky pod hranicou minBlocks ostanú aj prázdne, napr. živé buckety primárneho súboru
+    public void trimTrailingEmptyBlocks(int minBlocks) {
+        this.allocationLock.lock();
+        try {
+            int last = this.totalBlocks - 1;
+
+            while (last >= minBlocks && this.emptyBlocks.contains(last)) {
+                last--;
+            }
+
+            int numberOfBlocks = this.totalBlocks - (last + 1);
+            if (numberOfBlocks <= 0) {
+                return;
+            }
+            this.truncateLastBlock(numberOfBlocks);
+
+            for (int i = 0; i < numberOfBlocks; i++) {
+                this.totalBlocks--;
+                this.emptyBlocks.remove(this.totalBlocks);
+            }
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    public void writeBlockToFile(B block, int blockIndex) {
+        LinkedHashMap<Integer, B> captured = this.capturedWrites();
+        if (captured != null) {
+            block.lender = null;
+            captured.put(blockIndex, block);
+            return;
+        }
+        if (this.bufferPool != null) {
+            this.bufferPool.put(this, this.poolFileId, blockIndex, this.poolImage(block), true);
+            return;
         }
+        this.writeBlockToStorage(block, blockIndex);
+    }
 
-        int numberOfBlocks = this.totalBlocks - (last + 1);
-        if (numberOfBlocks <= 0) {
+    // Zápis viacerých blokov naraz: zoradia sa podľa pozície a susedné bloky idú jedným zberným zápisom
+    public void writeBlocks(int[] indices, B[] blocks) {
+        if (indices.length != blocks.length) {
+            throw new IllegalArgumentException("Indices and blocks must have the same length");
+        }
+        LinkedHashMap<Integer, B> captured = this.capturedWrites();
+        if (captured != null) {
+            for (int j = 0; j < indices.length; j++) {
+                blocks[j].lender = null;
+                captured.put(indices[j], blocks[j]);
+            }
             return;
         }
-        this.truncateLastBlock(numberOfBlocks);
+        long[] order = new long[indices.length];
+        for (int j = 0; j < indices.length; j++) {
+            order[j] = ((long) indices[j] << 32) | j;
+        }
+        Arrays.sort(order);
 
-        for (int i = 0; i < numberOfBlocks; i++) {
-            this.totalBlocks--;
-            this.emptyBlocks.remove(Integer.valueOf(this.totalBlocks));
+        ByteBuffer[] run = new ByteBuffer[order.length];
+        int runLength = 0;
+        int runStart = -1;
+        for (int j = 0; j < order.length; j++) {
+            int blockIndex = (int) (order[j] >>> 32);
+            if (j + 1 < order.length && (int) (order[j + 1] >>> 32) == blockIndex) {
+                continue; // rovnaký blok zapísaný viackrát, platí posledný zápis
+            }
+            B block = blocks[(int) order[j]];
+            if (runLength > 0 && blockIndex != runStart + runLength) {
+                this.writeRun(run, runLength, runStart);
+                runLength = 0;
+            }
+            if (runLength == 0) {
+                runStart = blockIndex;
+            }
+            ByteBuffer encoded = ByteBuffer.allocate(this.blockSize);
+            block.writeTo(encoded);
+            run[runLength++] = encoded.flip();
+            if (this.bufferPool != null) {
+                // zakódovaný blok sa do poolu vloží priamo, pole sa už nemení
+                this.bufferPool.put(this, this.poolFileId, blockIndex, encoded.array(), false);
+            }
+        }
+        if (runLength > 0) {
+            this.writeRun(run, runLength, runStart);
         }
     }
 
-    public void writeBlockToFile(B block, int blockIndex) {
-        byte[] blockData = block.toByteArray();
-        try (RandomAccessFile raf = new RandomAccessFile(this.dataFile, "rw")) {
-            raf.seek((long) blockIndex * this.blockSize);
-            raf.write(blockData);
+    private void writeRun(ByteBuffer[] run, int runLength, int firstBlockIndex) {
+        try {
+            this.getStorage().write(Arrays.copyOf(run, runLength), (long) firstBlockIndex * this.blockSize);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public B getBlock(int blockIndex) {
+        LinkedHashMap<Integer, B> captured = this.capturedWrites();
+        if (captured != null) {
+            B block = captured.get(blockIndex);
+            if (block != null) {
+                return block;
+            }
+        }
+        if (this.bufferPool != null) {
+            byte[] cached = this.bufferPool.get(this.poolFileId, blockIndex);
+            if (cached != null) {
+                return this.decodePoolImage(cached);
+            }
+            B block = this.readBlockFromStorage(blockIndex);
+            if (captured == null) {
+                this.bufferPool.put(this, this.poolFileId, blockIndex, this.poolImage(block), false);
+            }
+            return block;
+        }
+        return this.readBlockFromStorage(blockIndex);
+    }
+
+    // Pool drží zakódovanú kópiu bloku, zmena vráteného bloku alebo záznamu preto stránku v poole nezmení
+    private byte[] poolImage(B block) {
+        ByteBuffer buffer = ByteBuffer.allocate(this.blockSize);
+        block.writeTo(buffer);
+        return buffer.array();
+    }
+
+    private B decodePoolImage(byte[] image) {
+        B block = this.createBlock();
+        block.readFrom(ByteBuffer.wrap(image));
+        return block;
+    }
+
+    public B pinBlock(int blockIndex) {
+        B block = this.borrowBlock(blockIndex);
+        if (this.bufferPool != null) {
+            this.bufferPool.pin(this.poolFileId, blockIndex);
+        }
+        return block;
+    }
+
+    public void unpinBlock(int blockIndex, boolean dirty) {
+        if (this.bufferPool != null) {
+            this.bufferPool.unpin(this.poolFileId, blockIndex, dirty);
+        }
+    }
+
+    // Volá pool mimo svojho monitora, aj z vlákna iného súboru, preto sa nepoužíva zdieľaný zápisový buffer
+    void writeBack(int blockIndex, byte[] image, long lsn) {
+        if (lsn > 0 && this.writeAheadLog != null) {
+            this.writeAheadLog.awaitDurable(lsn);
+        }
+        this.writeFully(ByteBuffer.wrap(image), (long) blockIndex * this.blockSize);
+    }
+
+    void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    // Zápisy jednej operácie sa zachytia v pamäti a na disk idú až po zapísaní do logu
+    void beginCapture() {
+        this.captureOwner = Thread.currentThread();
+        this.capturedWrites = new LinkedHashMap<>();
+        this.capturedTruncateTo = -1;
+        this.capturedTotalBlocks = this.totalBlocks;
+        this.capturedTotalRecords = this.totalRecords;
+    }
+
+    Map<Integer, B> getCapturedWrites() {
+        return this.capturedWrites;
+    }
+
+    void discardCapture() {
+        this.captureOwner = null;
+        this.capturedWrites = null;
+        this.capturedTruncateTo = -1;
+    }
+
+    // Zrušená operácia: počítadlá sa vrátia na stav pred operáciou a zoznamy voľných blokov sa zostavia z potvrdených blokov;
+    // vráti false, ak zachytávanie už nebolo aktívne a nie je čo vracať
+    boolean rollbackCapture() {
+        if (this.capturedWrites() == null) {
+            return false;
+        }
+        this.discardCapture();
+        this.totalBlocks = this.capturedTotalBlocks;
+        this.totalRecords = this.capturedTotalRecords;
+        this.rebuildLists();
+        return true;
+    }
+
+    // Zápisy na miesto idú až po tom, ako je záznam lsn v logu trvalý: s poolom to stráži zápis späť z poolu,
+    // bez poolu stránky počkajú medzi odloženými, na fsync logu sa tu nečaká
+    void applyCapturedWrites(long lsn) {
+        Map<Integer, B> writes = this.capturedWrites;
+        int truncateTo = this.capturedTruncateTo;
+        this.discardCapture();
+        if (truncateTo >= 0) {
+            // skrátenie sa nedá vrátiť, preto musí byť záznam v logu trvalý skôr
+            this.writeAheadLog.awaitDurable(lsn);
+            this.writeDurablePages();
+            this.truncateStorage(truncateTo);
+        }
+        if (this.bufferPool != null) {
+            for (Map.Entry<Integer, B> entry : writes.entrySet()) {
+                this.bufferPool.put(this, this.poolFileId, entry.getKey(), this.poolImage(entry.getValue()), true, lsn);
+            }
+            return;
+        }
+        int pending;
+        synchronized (this.pendingPages) {
+            for (Map.Entry<Integer, B> entry : writes.entrySet()) {
+                this.pendingPages.put(entry.getKey(), new PendingPage(this.poolImage(entry.getValue()), lsn));
+            }
+            pending = this.pendingPages.size();
+        }
+        if (pending > MAX_PENDING_PAGES) {
+            this.writeAheadLog.awaitDurable(lsn);
+        }
+        this.writeDurablePages();
+    }
+
+    // Zapíše na miesto odložené stránky, ktorých záznam v logu je už trvalý; novšia verzia stránky nahradí staršiu,
+    // takže na disk nikdy nejde stránka, ktorej záznam ešte nie je trvalý
+    void writeDurablePages() {
+        synchronized (this.pendingPages) {
+            if (this.pendingPages.isEmpty()) {
+                return;
+            }
+            long durableLsn = this.writeAheadLog.getDurableLsn();
+            Iterator<Map.Entry<Integer, PendingPage>> iterator = this.pendingPages.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, PendingPage> entry = iterator.next();
+                if (entry.getValue().lsn <= durableLsn) {
+                    // čitateľ stránku nájde medzi odloženými, kým nie je celá zapísaná
+                    this.writeFully(ByteBuffer.wrap(entry.getValue().image), (long) entry.getKey() * this.blockSize);
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void writePendingPages() {
+        boolean pending;
+        synchronized (this.pendingPages) {
+            pending = !this.pendingPages.isEmpty();
+        }
+        if (pending) {
+            this.writeAheadLog.flush();
+            this.writeDurablePages();
+        }
+    }
+
+    private byte[] pendingImage(int blockIndex) {
+        if (this.writeAheadLog == null) {
+            return null;
+        }
+        synchronized (this.pendingPages) {
+            PendingPage page = this.pendingPages.get(blockIndex);
+            return page != null ? page.image : null;
+        }
+    }
+
+    private LinkedHashMap<Integer, B> capturedWrites() {
+        return this.captureOwner == Thread.currentThread() ? this.capturedWrites : null;
+    }
+
+    void writeRawBlock(int blockIndex, ByteBuffer blockData) {
+        this.writeFully(blockData, (long) blockIndex * this.blockSize);
+    }
+
+    // Po prehraní logu sa hlavička nastaví podľa logu a zoznamy voľných blokov sa zostavia z obsahu blokov
+    void recoverState(int totalBlocks, int totalRecords) {
+        this.totalBlocks = totalBlocks;
+        this.totalRecords = totalRecords;
+        this.truncateStorage(totalBlocks);
+        this.rebuildLists();
+    }
+
+    private void rebuildLists() {
+        this.allocationLock.lock();
         try {
-            B block = this.createBlock();
-            try (RandomAccessFile raf = new RandomAccessFile(this.dataFile, "r")) {
-                raf.seek((long) blockIndex * this.blockSize);
-                byte[] bytes = new byte[this.blockSize];
-                raf.readFully(bytes);
-                block.fromByteArray(bytes);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            this.emptyBlocks.clear();
+            this.partiallyEmptyBlocks.clear();
+            this.freeSpace.clear();
+            for (int i = 0; i < this.totalBlocks; i++) {
+                B block = this.borrowBlock(i);
+                this.updateListsAfterInsertLocked(i, block);
+                this.releaseBlock(block);
             }
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    public void flush() {
+        this.writePendingPages();
+        if (this.bufferPool != null) {
+            this.bufferPool.flush(this.poolFileId);
+        }
+        try {
+            this.getStorage().force();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeBlockToStorage(B block, int blockIndex) {
+        ByteBuffer buffer = this.concurrent ? ByteBuffer.allocate(this.blockSize) : this.writeBuffer;
+        buffer.clear();
+        block.writeTo(buffer);
+        buffer.flip();
+        this.writeFully(buffer, (long) blockIndex * this.blockSize);
+    }
+
+    private B readBlockFromStorage(int blockIndex) {
+        return this.readBlockFromStorage(blockIndex, this.createBlock());
+    }
+
+    private B readBlockFromStorage(int blockIndex, B block) {
+        byte[] pending = this.pendingImage(blockIndex);
+        if (pending != null) {
+            block.readFrom(ByteBuffer.wrap(pending));
             return block;
-        } catch (RuntimeException e) {
+        }
+        ByteBuffer buffer = this.concurrent ? ByteBuffer.allocate(this.blockSize) : this.readBuffer;
+        buffer.clear();
+        this.readFully(buffer, (long) blockIndex * this.blockSize);
+        block.readFrom(buffer.flip());
+        return block;
+    }
+
+    // Prázdny blok pre zápis; ak vlákno má recyklovaný blok, použije sa ten namiesto novej alokácie
+    B newBlock() {
+        B block = this.spareBlocks.get().pollFirst();
+        if (block == null) {
+            block = this.createBlock();
+        } else {
+            block.reset();
+        }
+        block.lender = this.spareBlocks;
+        return block;
+    }
+
+    // Bez buffer poolu a logu sa blok načíta do recyklovaného bloku a volajúci ho vráti cez releaseBlock;
+    // inak ide o novú kópiu stránky z poolu alebo zachytený blok a releaseBlock nič nerobí
+    public B borrowBlock(int blockIndex) {
+        if (this.capturedWrites() != null || this.bufferPool != null) {
+            return this.getBlock(blockIndex);
+        }
+        return this.readBlockFromStorage(blockIndex, this.newBlock());
+    }
+
+    // Po vrátení sa blok, jeho stránka aj dekódované záznamy znova použijú, volajúci si ich nesmie ponechať
+    public void releaseBlock(B block) {
+        if (block == null || block.lender != this.spareBlocks) {
+            return;
+        }
+        block.lender = null;
+        ArrayDeque<B> spares = this.spareBlocks.get();
+        if (spares.size() < MAX_SPARE_BLOCKS) {
+            spares.push(block);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) {
+        try {
+            this.getStorage().write(buffer, position);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private B createBlock() {
+    private void readFully(ByteBuffer buffer, long position) {
         try {
-            return this.blockClass.getDeclaredConstructor(Class.class, int.class).newInstance(this.recordClass, this.blockSize);
-        } catch (Exception e) {
-            throw new RuntimeException("Error creating block instance", e);
+            this.getStorage().read(buffer, position);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Úložisko sa otvára raz a ostáva otvorené až do close(), po close() sa pri ďalšom prístupe otvorí znova
+    private IBlockStorage getStorage() throws IOException {
+        if (this.storage == null || !this.storage.isOpen()) {
+            if (this.storageMode == StorageMode.MEMORY_MAPPED) {
+                this.storage = new MappedBlockStorage(this.dataFile, this.blockSize);
+            } else {
+                this.storage = new ChannelBlockStorage(this.dataFile);
+            }
         }
+        return this.storage;
+    }
+
+    B createBlock() {
+        B block = this.blockFactory.create(this.recordFactory, this.recordSize, this.blockSize, this.recordFormat);
+        if (this.fingerprints) {
+            ((ChainedBlock<T>) block).enableFingerprints();
+        }
+        if (this.slotMode == SlotMode.STABLE) {
+            block.enableStableSlots();
+        }
+        return block;
+    }
+
+    // Známe typy blokov sa vytvárajú priamo, reflexia ostáva len pre cudzie podtriedy a volá sa raz
+    private static <T extends IRecord<T>, B extends Block<T>> IBlockFactory<T, B> blockFactoryFor(Class<B> blockClass) {
+        if ((Class<?>) blockClass == ChainedBlock.class) {
+            return (recordFactory, recordSize, blockSize, recordFormat) -> (B) new ChainedBlock<>(recordFactory, recordSize, blockSize, recordFormat);
+        }
+        if ((Class<?>) blockClass == Block.class) {
+            return (recordFactory, recordSize, blockSize, recordFormat) -> (B) new Block<>(recordFactory, recordSize, blockSize, recordFormat);
+        }
+        Constructor<B> constructor;
+        try {
+            constructor = blockClass.getDeclaredConstructor(Supplier.class, int.class, int.class, RecordFormat.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Block class " + blockClass.getName() + " has no factory constructor", e);
+        }
+        return (recordFactory, recordSize, blockSize, recordFormat) -> {
+            try {
+                return constructor.newInstance(recordFactory, recordSize, blockSize, recordFormat);
+            } catch (Exception e) {
+                throw new RuntimeException("Error creating block instance", e);
+            }
+        };
     }
     //Používa sa iba ne debugovanie pre výpis v testery
     public int getNextBlockIndex(int blockIndex) {
@@ -227,25 +888,88 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
     }
 
     private void truncateLastBlock(int numberOfBlocks) {
-        try (RandomAccessFile raf = new RandomAccessFile(this.dataFile, "rw")) {
-            long newLength = Math.max(0, raf.length() - ((long) this.blockSize * numberOfBlocks));
-            raf.setLength(newLength);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        int newTotalBlocks = Math.max(0, this.totalBlocks - numberOfBlocks);
+        LinkedHashMap<Integer, B> captured = this.capturedWrites();
+        if (captured != null) {
+            captured.keySet().removeIf(index -> index >= newTotalBlocks);
+            this.capturedTruncateTo = this.capturedTruncateTo < 0 ? newTotalBlocks : Math.min(this.capturedTruncateTo, newTotalBlocks);
+            return;
         }
+        this.truncateStorage(newTotalBlocks);
     }
 
-    void saveHeader() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(this.headerFile))) {
-            pw.println(this.totalBlocks);
-            pw.println(this.totalRecords);
+    private void truncateStorage(int newTotalBlocks) {
+        if (this.bufferPool != null) {
+            this.bufferPool.discardFrom(this.poolFileId, newTotalBlocks);
+        }
+        synchronized (this.pendingPages) {
+            this.pendingPages.keySet().removeIf(index -> index >= newTotalBlocks);
+        }
+        try {
+            this.getStorage().truncate((long) newTotalBlocks * this.blockSize);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    void saveMetadata() {
+        this.saveMetadata(this.durability != DurabilityMode.NONE);
+    }
+
+    void saveMetadata(boolean sync) {
+        ByteBuffer buffer;
+        this.allocationLock.lock();
+        try {
+            buffer = MetadataFile.allocate(6 * Integer.BYTES + this.emptyBlocks.getEncodedSize()
+                    + this.partiallyEmptyBlocks.getEncodedSize() + this.freeSpace.getEncodedSize());
+            buffer.putInt(this.blockSize);
+            buffer.putInt(this.totalBlocks);
+            buffer.putInt(this.totalRecords);
+            buffer.putInt(this.recordFormat.ordinal());
+            buffer.putInt((this.fingerprints ? FLAG_FINGERPRINTS : 0) | (this.slotMode == SlotMode.STABLE ? FLAG_STABLE_SLOTS : 0));
+            this.emptyBlocks.writeTo(buffer);
+            this.partiallyEmptyBlocks.writeTo(buffer);
+            buffer.putInt(this.placementPolicy.ordinal());
+            this.freeSpace.writeTo(buffer);
+        } finally {
+            this.allocationLock.unlock();
+        }
+        MetadataFile.write(this.metadataFile, METADATA_MAGIC, METADATA_VERSION, buffer, sync);
+        this.deleteLegacyMetadata();
+    }
+
+    private void loadMetadata() {
+        if (!this.metadataFile.exists()) {
+            // súbor vytvorený pred zavedením binárnych metadát, pri ďalšom uložení sa prevedie
+            this.loadListFromFile(this.emptyBlocksFile, this.emptyBlocks);
+            this.loadListFromFile(this.partialBlocksFile, this.partiallyEmptyBlocks);
+            this.loadLegacyHeader();
+            return;
+        }
+        ByteBuffer buffer = MetadataFile.read(this.metadataFile, METADATA_MAGIC, METADATA_VERSION);
+        int storedBlockSize = buffer.getInt();
+        if (storedBlockSize != this.blockSize) {
+            throw new IllegalStateException("Block size mismatch in " + this.metadataFile.getName()
+                    + ": stored " + storedBlockSize + ", requested " + this.blockSize);
+        }
+        this.totalBlocks = buffer.getInt();
+        this.totalRecords = buffer.getInt();
+        // verzia 1 nepoznala kompaktný formát, všetky takéto súbory sú WIDE
+        this.recordFormat = MetadataFile.version(buffer) >= 2 ? RecordFormat.values()[buffer.getInt()] : RecordFormat.WIDE;
+        // odtlačky v hlavičkách blokov pribudli vo verzii 3
+        int flags = MetadataFile.version(buffer) >= 3 ? buffer.getInt() : 0;
+        this.fingerprints = (flags & FLAG_FINGERPRINTS) != 0;
+        this.slotMode = (flags & FLAG_STABLE_SLOTS) != 0 ? SlotMode.STABLE : SlotMode.SWAP_LAST;
+        this.emptyBlocks.readFrom(buffer);
+        this.partiallyEmptyBlocks.readFrom(buffer);
+        // koše podľa zaplnenia pribudli vo verzii 4, staršie súbory si ich zostavia pri prvom použití
+        if (MetadataFile.version(buffer) >= 4) {
+            this.placementPolicy = PlacementPolicy.values()[buffer.getInt()];
+            this.freeSpace.readFrom(buffer);
+        }
+    }
 
-    private void loadHeader() {
+    private void loadLegacyHeader() {
         try (BufferedReader br = new BufferedReader(new FileReader(this.headerFile))) {
             this.totalBlocks = Integer.parseInt(br.readLine());
             this.totalRecords = Integer.parseInt(br.readLine());
@@ -254,28 +978,13 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
         }
     }
 
-
-    void saveLists() {
-        this.saveListToFile(this.emptyBlocksFile, this.emptyBlocks);
-        this.saveListToFile(this.partialBlocksFile, this.partiallyEmptyBlocks);
+    private void deleteLegacyMetadata() {
+        this.headerFile.delete();
+        this.emptyBlocksFile.delete();
+        this.partialBlocksFile.delete();
     }
 
-    private void loadLists() {
-        this.loadListFromFile(this.emptyBlocksFile, this.emptyBlocks);
-        this.loadListFromFile(this.partialBlocksFile, this.partiallyEmptyBlocks);
-    }
-
-    private void saveListToFile(File file, List<Integer> list) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
-            for (int i : list) {
-                pw.println(i);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Error saving list file: " + file.getName(), e);
-        }
-    }
-
-    private void loadListFromFile(File file, List<Integer> list) {
+    private void loadListFromFile(File file, BlockIndexSet list) {
         list.clear();
         if (!file.exists()) return;
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
@@ -292,14 +1001,129 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
 
     public int getTotalBlocks() { return this.totalBlocks; }
     public int getTotalRecords() { return this.totalRecords; }
+    public int getUsedBlocks() {
+        this.allocationLock.lock();
+        try {
+            return this.totalBlocks - this.emptyBlocks.size();
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
 
     public int getBlockSize() {
         return this.blockSize;
     }
 
+    public StorageMode getStorageMode() {
+        return this.storageMode;
+    }
+
     public int getBlockFactor() {
-        B tempBlock = this.createBlock();
-        return tempBlock.getBlockFactor();
+        return this.blockFactor;
+    }
+
+    public int getRecordSize() {
+        return this.recordSize;
+    }
+
+    public RecordFormat getRecordFormat() {
+        return this.recordFormat;
+    }
+
+    // Formát sa dá zmeniť iba na prázdnom súbore, hlavička prázdneho bloku je v oboch formátoch rovnaká
+    public void setRecordFormat(RecordFormat recordFormat) {
+        if (recordFormat == this.recordFormat) {
+            return;
+        }
+        if (this.totalRecords > 0) {
+            throw new IllegalStateException("Record format can only be changed on an empty file");
+        }
+        if (this.bufferPool != null) {
+            this.bufferPool.flush(this.poolFileId);
+            this.bufferPool.discardFrom(this.poolFileId, 0);
+        }
+        this.recordFormat = recordFormat;
+        this.updateLayout();
+        this.saveMetadata();
+    }
+
+    public boolean isFingerprintsEnabled() {
+        return this.fingerprints;
+    }
+
+    // Odtlačky menia blokovací faktor, preto sa dajú zapnúť iba na prázdnom súbore s reťazenými blokmi
+    public void setFingerprintsEnabled(boolean fingerprints) {
+        if (fingerprints == this.fingerprints) {
+            return;
+        }
+        if (this.totalRecords > 0) {
+            throw new IllegalStateException("Fingerprints can only be changed on an empty file");
+        }
+        if (fingerprints && !(this.blockFactory.create(this.recordFactory, this.recordSize, this.blockSize, this.recordFormat) instanceof ChainedBlock)) {
+            throw new IllegalStateException("Fingerprints require chained blocks");
+        }
+        if (this.bufferPool != null) {
+            this.bufferPool.flush(this.poolFileId);
+            this.bufferPool.discardFrom(this.poolFileId, 0);
+        }
+        this.fingerprints = fingerprints;
+        this.updateLayout();
+        this.saveMetadata();
+    }
+
+    public SlotMode getSlotMode() {
+        return this.slotMode;
+    }
+
+    // STABLE mení blokovací faktor (bitmapa na konci bloku), preto sa dá prepnúť iba na prázdnom súbore
+    public void setSlotMode(SlotMode slotMode) {
+        if (slotMode == this.slotMode) {
+            return;
+        }
+        // staré prázdne bloky môžu mať na mieste bitmapy zvyšky zmazaných záznamov
+        if (this.totalRecords > 0 || this.totalBlocks > 0) {
+            throw new IllegalStateException("Slot mode can only be changed on an empty file");
+        }
+        if (slotMode == SlotMode.STABLE) {
+            this.blockFactory.create(this.recordFactory, this.recordSize, this.blockSize, this.recordFormat).enableStableSlots();
+        }
+        if (this.bufferPool != null) {
+            this.bufferPool.flush(this.poolFileId);
+            this.bufferPool.discardFrom(this.poolFileId, 0);
+        }
+        this.slotMode = slotMode;
+        this.updateLayout();
+        this.saveMetadata();
+    }
+
+    public PlacementPolicy getPlacementPolicy() {
+        return this.placementPolicy;
+    }
+
+    // Politika neovplyvňuje rozloženie blokov, dá sa preto zmeniť kedykoľvek
+    public void setPlacementPolicy(PlacementPolicy placementPolicy) {
+        if (placementPolicy == this.placementPolicy) {
+            return;
+        }
+        this.placementPolicy = placementPolicy;
+        if (placementPolicy != PlacementPolicy.FIRST_FIT && !this.freeSpace.isComplete()) {
+            this.rebuildFreeSpace();
+        }
+        this.saveMetadata();
+    }
+
+    // Zaplnenie sa zistí z hlavičiek čiastočne zaplnených blokov, prázdne a plné bloky do košov nepatria
+    private void rebuildFreeSpace() {
+        this.freeSpace.clear();
+        this.partiallyEmptyBlocks.forEach(index -> {
+            B block = this.borrowBlock(index);
+            this.freeSpace.update(index, block.getValidCount());
+            this.releaseBlock(block);
+        });
+    }
+
+    public Supplier<T> getRecordFactory() {
+        return this.recordFactory;
     }
 
     public Class<T> getRecordClass() {
@@ -307,46 +1131,283 @@ public class HeapFile<B extends Block<T>, T extends IRecord<T>> {
     }
 
     public void alocateBlocks(int initialBuckets) {
+        B emptyBlock = this.createBlock();
         for (int i = 0; i < initialBuckets; i++) {
-            byte[] blockData = this.createBlock().toByteArray();
-            try (RandomAccessFile raf = new RandomAccessFile(this.dataFile, "rw")) {
-                raf.seek((long) i * this.blockSize);
-                raf.write(blockData);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            this.writeBlockToFile(emptyBlock, i);
         }
         this.totalBlocks = initialBuckets;
     }
 
+    public void setBufferPool(BufferPool bufferPool) {
+        if (this.bufferPool != null) {
+            this.bufferPool.release(this.poolFileId);
+        }
+        this.bufferPool = bufferPool;
+        if (bufferPool != null) {
+            this.poolFileId = bufferPool.registerFile();
+        }
+    }
+
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    public void setDurability(DurabilityMode durability) {
+        this.setDurability(durability, 0);
+    }
+
+    public void setDurability(DurabilityMode durability, long syncIntervalMs) {
+        if (durability == DurabilityMode.FSYNC_EVERY_N_MS && syncIntervalMs <= 0) {
+            throw new IllegalArgumentException("Sync interval must be > 0 for " + durability);
+        }
+        this.allocationLock.lock();
+        try {
+            this.durability = durability;
+            this.syncIntervalMs = syncIntervalMs;
+            this.cancelScheduledSync();
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    public DurabilityMode getDurability() {
+        return this.durability;
+    }
+
+    public void sync() {
+        this.flush();
+        this.saveMetadata(true);
+        this.lastSyncTime = System.currentTimeMillis();
+    }
+
+    // Volá sa pod allocationLock
+    private void afterOperation() {
+        if (this.syncFailure != null) {
+            RuntimeException failure = this.syncFailure;
+            this.syncFailure = null;
+            throw failure;
+        }
+        if (this.durability == DurabilityMode.FSYNC_PER_OPERATION) {
+            this.sync();
+        } else if (this.durability == DurabilityMode.FSYNC_EVERY_N_MS && this.scheduledSync == null) {
+            // prvá zmena po synchronizácii naplánuje sync najneskôr o interval od predošlého
+            long delay = Math.max(0, this.lastSyncTime + this.syncIntervalMs - System.currentTimeMillis());
+            this.scheduledSync = SYNC_EXECUTOR.schedule(this::runScheduledSync, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runScheduledSync() {
+        this.allocationLock.lock();
+        try {
+            if (this.scheduledSync == null) {
+                return;
+            }
+            this.scheduledSync = null;
+            this.sync();
+        } catch (RuntimeException e) {
+            this.syncFailure = e;
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    private void cancelScheduledSync() {
+        if (this.scheduledSync != null) {
+            this.scheduledSync.cancel(false);
+            this.scheduledSync = null;
+        }
+    }
+
     public void close() {
-        this.saveLists();
-        this.saveHeader();
+        this.allocationLock.lock();
+        try {
+            this.cancelScheduledSync();
+        } finally {
+            this.allocationLock.unlock();
+        }
+        this.writePendingPages();
+        if (this.bufferPool != null) {
+            this.bufferPool.release(this.poolFileId);
+        }
+        this.saveMetadata();
+        if (this.storage != null) {
+            try {
+                if (this.durability != DurabilityMode.NONE) {
+                    this.storage.force();
+                }
+                this.storage.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.storage = null;
+        }
     }
 
     public void setTotalRecords(int totalRecords) {
         this.totalRecords = totalRecords;
     }
 
+    void adjustTotalRecords(int delta) {
+        this.allocationLock.lock();
+        try {
+            this.totalRecords += delta;
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
     public void incrementTotalBlocks() {
-        this.totalBlocks++;
+        this.allocationLock.lock();
+        try {
+            this.totalBlocks++;
+        } finally {
+            this.allocationLock.unlock();
+        }
+    }
+
+    // Štiepenie a zlučovanie drží zámok počas celej zmeny reťazcov, bloky dočasne vedené ako prázdne tak nikto iný nepridelí
+    void lockAllocation() {
+        this.allocationLock.lock();
+    }
+
+    void unlockAllocation() {
+        this.allocationLock.unlock();
+    }
+
+    boolean isConcurrent() {
+        return this.concurrent;
+    }
+
+    // Súbežný režim: vlastné vstupno-výstupné buffre pre každé volanie a nemenné stránky v poole; úložisko sa otvorí hneď,
+    // aby ho vlákna neotvárali naraz
+    void setConcurrent(boolean concurrent) {
+        if (concurrent && this.storageMode == StorageMode.MEMORY_MAPPED) {
+            throw new IllegalStateException("Concurrent access requires channel storage");
+        }
+        if (concurrent) {
+            try {
+                this.getStorage();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.concurrent = concurrent;
     }
 
     public boolean editInChain(int nextIndex, T newRecord) {
+        return this.editInChain(nextIndex, newRecord, null);
+    }
+
+    boolean editInChain(int nextIndex, T newRecord, CompletableFuture<B> startBlock) {
         int currentIndex = nextIndex;
+        CompletableFuture<B> pending = startBlock;
 
         while (currentIndex != -1) {
-            ChainedBlock block = (ChainedBlock) this.getBlock(currentIndex);
+            ChainedBlock block = (ChainedBlock) this.takeBlock(currentIndex, pending);
+            int followingIndex = block.getNextBlockIndex();
+            pending = this.prefetchBlock(followingIndex);
             boolean updated = block.updateRecord(newRecord);
             if (updated) {
+                this.cancelPrefetch(pending);
                 this.writeBlockToFile((B) block, currentIndex);
+                this.releaseBlock((B) block);
                 return true;
             }
-            currentIndex = block.getNextBlockIndex();
+            this.releaseBlock((B) block);
+            currentIndex = followingIndex;
         }
         return false;
     }
 
+    <V extends IRecordView<T>> boolean visitInChain(int startBlockIndex, T recordTemplate, V view, Consumer<? super V> visitor, CompletableFuture<B> startBlock) {
+        int currentIndex = startBlockIndex;
+        CompletableFuture<B> pending = startBlock;
+
+        while (currentIndex != -1) {
+            ChainedBlock block = (ChainedBlock) this.takeBlock(currentIndex, pending);
+            int nextIndex = block.getNextBlockIndex();
+            pending = this.prefetchBlock(nextIndex);
+            int found = block.indexOf(recordTemplate);
+            if (found != -1) {
+                this.cancelPrefetch(pending);
+                try {
+                    visitor.accept((V) block.viewAt(found, view));
+                } finally {
+                    this.releaseBlock((B) block);
+                }
+                return true;
+            }
+            this.releaseBlock((B) block);
+            currentIndex = nextIndex;
+        }
+        return false;
+    }
+
+    // Nasledujúci blok reťazca sa načíta a dekóduje na pozadí, kým sa prehľadáva aktuálny blok
+    CompletableFuture<B> prefetchBlock(int blockIndex) {
+        if (!this.prefetchEnabled || blockIndex < 0) {
+            return null;
+        }
+        LinkedHashMap<Integer, B> captured = this.capturedWrites();
+        if ((captured != null && captured.containsKey(blockIndex))
+                || (this.bufferPool != null && this.bufferPool.contains(this.poolFileId, blockIndex))
+                || this.pendingImage(blockIndex) != null) {
+            return null;
+        }
+        IBlockStorage blockStorage;
+        try {
+            blockStorage = this.getStorage();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        long position = (long) blockIndex * this.blockSize;
+        // cieľový blok sa vyberie ešte vo vlákne volajúceho, recyklovací pool je viazaný na vlákno
+        B block = this.newBlock();
+        return CompletableFuture.supplyAsync(() -> {
+            ByteBuffer buffer = ByteBuffer.allocate(this.blockSize);
+            try {
+                blockStorage.read(buffer, position);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            block.readFrom(buffer.flip());
+            return block;
+        }, PREFETCH_EXECUTOR);
+    }
+
+    private B takeBlock(int blockIndex, CompletableFuture<B> pending) {
+        if (pending == null) {
+            return this.borrowBlock(blockIndex);
+        }
+        B block;
+        try {
+            block = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for prefetched block", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error prefetching block " + blockIndex, e.getCause());
+        }
+        if (this.bufferPool != null && this.capturedWrites() == null) {
+            this.bufferPool.put(this, this.poolFileId, blockIndex, this.poolImage(block), false);
+        }
+        return block;
+    }
+
+    private void cancelPrefetch(CompletableFuture<B> pending) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+    }
+
+    public boolean isPrefetchEnabled() {
+        return this.prefetchEnabled;
+    }
+
     public static class BlockInsertResult<T extends IRecord<T>> {
         public final int blockIndex;
         public final Block<T> block;
@@ -0,0 +1,26 @@
+package DS;
+
+public enum KeyHashing {
+    // pôvodné smerovanie podľa Math.abs(key), ostáva pre adresáre vytvorené pred zavedením seedu
+    ABSOLUTE {
+        @Override
+        public long hash(long key, long seed) {
+            return Math.abs(key);
+        }
+    },
+    // finalizér fmix64 z MurmurHash3 nad kľúčom zmiešaným so seedom súboru; je to bijekcia a každý bit kľúča ovplyvní nízke bity
+    MIX64 {
+        @Override
+        public long hash(long key, long seed) {
+            long h = key ^ seed;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    };
+
+    public abstract long hash(long key, long seed);
+}
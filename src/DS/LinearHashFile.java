@@ -2,25 +2,117 @@ package DS;
 
 import Interface.IHashable;
 import Interface.IRecord;
+import Interface.IRecordView;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class LinearHashFile<T extends IRecord<T> & IHashable> {
+    private static final int DIRECTORY_MAGIC = 0x4C484452;
+    private static final int DIRECTORY_VERSION = 3;
+    private static final double SPLIT_LOAD_FACTOR = 0.75;
+    private static final double DEFAULT_LOW_WATER_MARK = 0.5;
+    private static final long CHECKPOINT_LOG_SIZE = 16L * 1024 * 1024;
+    private static final byte PRIMARY_FILE_ID = 0;
+    private static final byte OVERFLOW_FILE_ID = 1;
+    private static final int LOCK_STRIPES = 64;
+    // Jedno kolo údržby súboru urobí najviac toľko štiepení, potom sa zaradí za kolá ostatných súborov
+    private static final int MAINTENANCE_BATCH = 16;
+    private static final ExecutorService MAINTENANCE_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+        Thread thread = new Thread(r, "linear-hash-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService SYNC_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "linear-hash-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final HeapFile<ChainedBlock<T>, T> primaryFile;
     private final HeapFile<ChainedBlock<T>, T> overflowFile;
     private final Function<T, Long> keyExtractor;
+    // Mimo súbežného režimu sa operácie nad súborom radia za tento zámok; v súbežnom režime chráni iba plánovanie
+    // štiepení na pozadí a správu súboru, zdieľaný BufferPool sa synchronizuje sám
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition maintenanceDone = this.lock.newCondition();
+    // V súbežnom režime bucket chráni pruh podľa jeho indexu, štiepenia a zlučovania sa radia za zámkom štruktúry
+    // a smerovanie (i, nextSplit) sa mení iba pod zámkom adresára
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    private final ReentrantLock structureLock = new ReentrantLock();
+    private final StampedLock directoryLock = new StampedLock();
+    // V súbežnom režime s logom sa zmeny zachytávajú po jednej; berie sa po pruhoch a pred zámkom alokácie
+    private final ReentrantLock walLock = new ReentrantLock();
+    private boolean concurrent;
 
     private int i; //aktualna uroven (u)
     private int nextSplit;
+    // úroveň zodpovedajúca initialBuckets, pod ňu sa buckety nezlučujú
+    private int minLevel;
+    private KeyHashing keyHashing;
+    private long hashSeed;
+    private double lowWaterMark;
+    private SplitPolicy splitPolicy;
+    private boolean backgroundSplitting;
+    private boolean maintenanceScheduled;
+    private int splitBudget;
+    private int pendingOverflowAllocations;
+    private RuntimeException maintenanceFailure;
+    private boolean closed;
     private final File dirFile;
+    private final File legacyDirFile;
+    private final File walFile;
+    private WriteAheadLog writeAheadLog;
+    private int operationDepth;
+    // smerovanie pred začiatkom zachytenej operácie, pri jej zrušení sa vráti
+    private int capturedLevel;
+    private int capturedNextSplit;
+    // LSN posledného commitu vlákna, na jeho trvalosť sa čaká až po uvoľnení zámkov
+    private final ThreadLocal<long[]> commitLsn = ThreadLocal.withInitial(() -> new long[1]);
+    private DurabilityMode durability;
+    private long syncIntervalMs;
+    private volatile long lastSyncTime;
+    // Pri FSYNC_EVERY_N_MS je sync naplánovaný iba kým sú v súbore nesynchronizované zmeny
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    private volatile ScheduledFuture<?> scheduledSync;
 
     private String baseFolder;
 
     public LinearHashFile(Class<T> recordClass, int initialBuckets,
                           Function<T, Long> keyExtractor,
                           String folderPath, int blockSizePrimary, int blockSizeOverflow) {
+        this(recordClass, initialBuckets, keyExtractor, folderPath, blockSizePrimary, blockSizeOverflow, StorageMode.CHANNEL);
+    }
+
+    public LinearHashFile(Class<T> recordClass, int initialBuckets,
+                          Function<T, Long> keyExtractor,
+                          String folderPath, int blockSizePrimary, int blockSizeOverflow, StorageMode storageMode) {
+        this(recordClass, Block.reflectiveFactory(recordClass), initialBuckets, keyExtractor, folderPath, blockSizePrimary, blockSizeOverflow, storageMode);
+    }
+
+    public LinearHashFile(Class<T> recordClass, Supplier<T> recordFactory, int initialBuckets,
+                          Function<T, Long> keyExtractor,
+                          String folderPath, int blockSizePrimary, int blockSizeOverflow) {
+        this(recordClass, recordFactory, initialBuckets, keyExtractor, folderPath, blockSizePrimary, blockSizeOverflow, StorageMode.CHANNEL);
+    }
+
+    public LinearHashFile(Class<T> recordClass, Supplier<T> recordFactory, int initialBuckets,
+                          Function<T, Long> keyExtractor,
+                          String folderPath, int blockSizePrimary, int blockSizeOverflow, StorageMode storageMode) {
 
         if (initialBuckets <= 0 || (initialBuckets & (initialBuckets - 1)) != 0) {
             throw new IllegalArgumentException("initialBuckets must be power of two and > 0");
@@ -36,68 +128,229 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
 
         String primaryFileName = folderPath + File.separator + "primary_data.bin";
         String overflowFileName = folderPath + File.separator + "overflow_data.bin";
-        String dirFileName = folderPath + File.separator + "directory.txt";
-
-        Class<ChainedBlock<T>> chainedBlockClass = (Class<ChainedBlock<T>>) (Class<?>) ChainedBlock.class;
+        String dirFileName = folderPath + File.separator + "directory.bin";
 
-        this.primaryFile = new HeapFile<>(primaryFileName, recordClass, chainedBlockClass, blockSizePrimary);
-        this.overflowFile = new HeapFile<>(overflowFileName, recordClass, chainedBlockClass, blockSizeOverflow);
+        this.primaryFile = new HeapFile<ChainedBlock<T>, T>(primaryFileName, recordClass, recordFactory, ChainedBlock::new, blockSizePrimary, storageMode);
+        this.overflowFile = new HeapFile<ChainedBlock<T>, T>(overflowFileName, recordClass, recordFactory, ChainedBlock::new, blockSizeOverflow, storageMode);
         this.dirFile = new File(dirFileName);
+        this.legacyDirFile = new File(folderPath + File.separator + "directory.txt");
+        this.walFile = new File(folderPath + File.separator + "wal.log");
 
         this.i = Integer.numberOfTrailingZeros(initialBuckets);
         this.nextSplit = 0;
+        this.minLevel = this.i;
+        this.keyHashing = KeyHashing.MIX64;
+        this.hashSeed = new Random().nextLong();
+        this.lowWaterMark = DEFAULT_LOW_WATER_MARK;
+        this.splitPolicy = SplitPolicy.loadFactor(SPLIT_LOAD_FACTOR);
+        this.durability = DurabilityMode.FLUSH_ON_CLOSE;
+        this.lastSyncTime = System.currentTimeMillis();
+        for (int s = 0; s < LOCK_STRIPES; s++) {
+            this.stripes[s] = new ReentrantLock();
+        }
 
-        if (this.dirFile.exists()) {
+        if (this.dirFile.exists() || this.legacyDirFile.exists()) {
             this.loadDirectory();
         } else {
             this.primaryFile.alocateBlocks(initialBuckets);
             this.saveDirectory();
         }
+        if (this.walFile.length() > 0) {
+            this.recover();
+        }
     }
 
     public LinearHashFile(Class<T> recordClass, int initialBuckets, Function<T,Long> keyExtractor, String primaryFileName, String overflowFileName, int blockSizePrimary, int blockSizeOverflow) {
+        this(recordClass, initialBuckets, keyExtractor, primaryFileName, overflowFileName, blockSizePrimary, blockSizeOverflow, StorageMode.CHANNEL);
+    }
+
+    public LinearHashFile(Class<T> recordClass, int initialBuckets, Function<T,Long> keyExtractor, String primaryFileName, String overflowFileName, int blockSizePrimary, int blockSizeOverflow, StorageMode storageMode) {
+        this(recordClass, Block.reflectiveFactory(recordClass), initialBuckets, keyExtractor, primaryFileName, overflowFileName, blockSizePrimary, blockSizeOverflow, storageMode);
+    }
+
+    public LinearHashFile(Class<T> recordClass, Supplier<T> recordFactory, int initialBuckets, Function<T,Long> keyExtractor, String primaryFileName, String overflowFileName, int blockSizePrimary, int blockSizeOverflow) {
+        this(recordClass, recordFactory, initialBuckets, keyExtractor, primaryFileName, overflowFileName, blockSizePrimary, blockSizeOverflow, StorageMode.CHANNEL);
+    }
+
+    public LinearHashFile(Class<T> recordClass, Supplier<T> recordFactory, int initialBuckets, Function<T,Long> keyExtractor, String primaryFileName, String overflowFileName, int blockSizePrimary, int blockSizeOverflow, StorageMode storageMode) {
         if (initialBuckets <= 0 || (initialBuckets & (initialBuckets - 1)) != 0) {
             throw new IllegalArgumentException("initialBuckets must be power of two and > 0");
         }
 
-        Class<ChainedBlock<T>> chainedBlockClass = (Class<ChainedBlock<T>>) (Class<?>) ChainedBlock.class;
-        this.primaryFile = new HeapFile<>(primaryFileName, recordClass, chainedBlockClass ,blockSizePrimary);
-        this.overflowFile = new HeapFile<>(overflowFileName, recordClass,chainedBlockClass, blockSizeOverflow);
+        this.primaryFile = new HeapFile<ChainedBlock<T>, T>(primaryFileName, recordClass, recordFactory, ChainedBlock::new, blockSizePrimary, storageMode);
+        this.overflowFile = new HeapFile<ChainedBlock<T>, T>(overflowFileName, recordClass, recordFactory, ChainedBlock::new, blockSizeOverflow, storageMode);
         this.keyExtractor = keyExtractor;
-        this.dirFile = new File(primaryFileName + "_dir.txt");
+        this.dirFile = new File(primaryFileName + "_dir.bin");
+        this.legacyDirFile = new File(primaryFileName + "_dir.txt");
+        this.walFile = new File(primaryFileName + "_wal.log");
 
         this.i = Integer.numberOfTrailingZeros(initialBuckets);
         this.nextSplit = 0;
+        this.minLevel = this.i;
+        this.keyHashing = KeyHashing.MIX64;
+        this.hashSeed = new Random().nextLong();
+        this.lowWaterMark = DEFAULT_LOW_WATER_MARK;
+        this.splitPolicy = SplitPolicy.loadFactor(SPLIT_LOAD_FACTOR);
+        this.durability = DurabilityMode.FLUSH_ON_CLOSE;
+        this.lastSyncTime = System.currentTimeMillis();
+        for (int s = 0; s < LOCK_STRIPES; s++) {
+            this.stripes[s] = new ReentrantLock();
+        }
 
-        if (this.dirFile.exists()) {
+        if (this.dirFile.exists() || this.legacyDirFile.exists()) {
             this.loadDirectory();
         } else {
             this.primaryFile.alocateBlocks(initialBuckets);
             this.saveDirectory();
         }
+        if (this.walFile.length() > 0) {
+            this.recover();
+        }
+    }
+
+    private long hashKey(long key) {
+        return this.keyHashing.hash(key, this.hashSeed);
     }
 
     private int bucketForKey(long key) {
-        long h = Math.abs(key);
-        int mod = (1 << this.i);
+        long h = this.hashKey(key);
+        long stamp = this.directoryLock.tryOptimisticRead();
+        int level = this.i;
+        int split = this.nextSplit;
+        if (!this.directoryLock.validate(stamp)) {
+            stamp = this.directoryLock.readLock();
+            try {
+                level = this.i;
+                split = this.nextSplit;
+            } finally {
+                this.directoryLock.unlockRead(stamp);
+            }
+        }
+        int mod = (1 << level);
         long bucket = h & (mod - 1); // mod 2^i
-        if (bucket < this.nextSplit) {
+        if (bucket < split) {
             bucket = h & (((long) mod << 1) - 1); // mod 2^(i+1)
         }
         return (int) bucket;
     }
 
+    private void setDirectory(int level, int split) {
+        long stamp = this.directoryLock.writeLock();
+        try {
+            this.i = level;
+            this.nextSplit = split;
+        } finally {
+            this.directoryLock.unlockWrite(stamp);
+        }
+    }
+
+    // Po zamknutí pruhu sa smerovanie overí znova, štiepenie mohlo kľúč medzitým presunúť do iného bucketu
+    private int lockBucket(T record) {
+        long key = this.keyExtractor.apply(record);
+        int bucket = this.bucketForKey(key);
+        while (true) {
+            ReentrantLock stripe = this.stripes[bucket % LOCK_STRIPES];
+            stripe.lock();
+            int current = this.bucketForKey(key);
+            if (current == bucket) {
+                return bucket;
+            }
+            stripe.unlock();
+            bucket = current;
+        }
+    }
+
+    private void unlockBucket(int bucket) {
+        this.stripes[bucket % LOCK_STRIPES].unlock();
+    }
+
+    // Dva pruhy sa zamykajú vždy v poradí indexov pruhov
+    private void lockBuckets(int first, int second) {
+        int a = Math.min(first % LOCK_STRIPES, second % LOCK_STRIPES);
+        int b = Math.max(first % LOCK_STRIPES, second % LOCK_STRIPES);
+        this.stripes[a].lock();
+        if (b != a) {
+            this.stripes[b].lock();
+        }
+    }
+
+    private void unlockBuckets(int first, int second) {
+        int a = Math.min(first % LOCK_STRIPES, second % LOCK_STRIPES);
+        int b = Math.max(first % LOCK_STRIPES, second % LOCK_STRIPES);
+        if (b != a) {
+            this.stripes[b].unlock();
+        }
+        this.stripes[a].unlock();
+    }
+
+    // Výhradný prístup pre správu súboru; v súbežnom režime čaká aj na všetky rozpracované operácie nad bucketmi
+    private void lockExclusive() {
+        this.lock.lock();
+        if (!this.concurrent) {
+            return;
+        }
+        this.structureLock.lock();
+        for (ReentrantLock stripe : this.stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockExclusive() {
+        if (this.concurrent && this.structureLock.isHeldByCurrentThread()) {
+            for (int s = this.stripes.length - 1; s >= 0; s--) {
+                this.stripes[s].unlock();
+            }
+            this.structureLock.unlock();
+        }
+        this.lock.unlock();
+    }
+
     private void saveDirectory() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(this.dirFile))) {
-            pw.println(this.i);
-            pw.println(this.nextSplit);
-        } catch (IOException e) {
-            throw new RuntimeException("Error saving hash directory", e);
+        this.saveDirectory(this.durability != DurabilityMode.NONE);
+    }
+
+    private void saveDirectory(boolean sync) {
+        ByteBuffer buffer = MetadataFile.allocate(4 * Integer.BYTES + Long.BYTES);
+        long stamp = this.directoryLock.readLock();
+        try {
+            buffer.putInt(this.i);
+            buffer.putInt(this.nextSplit);
+        } finally {
+            this.directoryLock.unlockRead(stamp);
         }
+        buffer.putInt(this.minLevel);
+        buffer.putInt(this.keyHashing.ordinal());
+        buffer.putLong(this.hashSeed);
+        MetadataFile.write(this.dirFile, DIRECTORY_MAGIC, DIRECTORY_VERSION, buffer, sync);
+        this.legacyDirFile.delete();
     }
 
     private void loadDirectory() {
-        try (BufferedReader br = new BufferedReader(new FileReader(this.dirFile))) {
+        if (!this.dirFile.exists()) {
+            this.loadLegacyDirectory();
+            return;
+        }
+        ByteBuffer buffer = MetadataFile.read(this.dirFile, DIRECTORY_MAGIC, DIRECTORY_VERSION);
+        this.i = buffer.getInt();
+        this.nextSplit = buffer.getInt();
+        // verzia 1 neukladala počiatočnú úroveň, platí initialBuckets z konštruktora
+        if (MetadataFile.version(buffer) >= 2) {
+            this.minLevel = buffer.getInt();
+        }
+        // záznamy starších súborov sú rozmiestnené podľa Math.abs(key), zmena smerovania by ich stratila
+        if (MetadataFile.version(buffer) >= 3) {
+            this.keyHashing = KeyHashing.values()[buffer.getInt()];
+            this.hashSeed = buffer.getLong();
+        } else {
+            this.keyHashing = KeyHashing.ABSOLUTE;
+            this.hashSeed = 0;
+        }
+    }
+
+    private void loadLegacyDirectory() {
+        this.keyHashing = KeyHashing.ABSOLUTE;
+        this.hashSeed = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(this.legacyDirFile))) {
             this.i = Integer.parseInt(br.readLine().trim());
             this.nextSplit = Integer.parseInt(br.readLine().trim());
         } catch (IOException e) {
@@ -106,43 +359,189 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
     }
 
     public void insert(T record) {
-        long key = this.keyExtractor.apply(record);
-        int bucket = this.bucketForKey(key);
-        this.insertIntoBucket(bucket, record);
+        this.primaryFile.requireEncodable(record);
+        if (this.concurrent) {
+            this.insertConcurrently(record);
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.throwMaintenanceFailure();
+            this.beginOperation();
+            try {
+                long key = this.keyExtractor.apply(record);
+                int bucket = this.bucketForKey(key);
+                this.insertIntoBucket(bucket, record);
+                this.commitOperation();
+            } catch (RuntimeException e) {
+                this.abortOperation();
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.awaitCommit();
+    }
+
+    public T delete(T record) {
+        if (this.concurrent) {
+            return this.deleteConcurrently(record);
+        }
+        T removed;
+        this.lock.lock();
+        try {
+            this.beginOperation();
+            try {
+                removed = this.deleteRecord(this.bucketForKey(this.keyExtractor.apply(record)), record);
+                if (removed != null) {
+                    this.mergeBucketsIfNeeded();
+                }
+                this.commitOperation();
+            } catch (RuntimeException e) {
+                this.abortOperation();
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.awaitCommit();
+        return removed;
     }
 
     public T find(T record) {
-        long key = this.keyExtractor.apply(record);
-        int bucket = this.bucketForKey(key);
-        ChainedBlock block = this.primaryFile.getBlock(bucket);
-        for (int r = 0; r < block.getValidCount(); r++) {
-            IRecord<T> rec = block.getRecordAt(r);
-            if (rec != null && rec.isEqual(record)) {
-                return rec.createCopy();
+        if (this.concurrent) {
+            int bucket = this.lockBucket(record);
+            try {
+                return this.findRecord(bucket, record);
+            } finally {
+                this.unlockBucket(bucket);
             }
         }
+        this.lock.lock();
+        try {
+            return this.findRecord(this.bucketForKey(this.keyExtractor.apply(record)), record);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Nájdený záznam sa odovzdá volajúcemu ako view nad stránkou bloku, bez vytvárania kópie
+    public <V extends IRecordView<T>> boolean find(T record, V view, Consumer<? super V> visitor) {
+        if (this.concurrent) {
+            int bucket = this.lockBucket(record);
+            try {
+                return this.visitRecord(bucket, record, view, visitor);
+            } finally {
+                this.unlockBucket(bucket);
+            }
+        }
+        this.lock.lock();
+        try {
+            return this.visitRecord(this.bucketForKey(this.keyExtractor.apply(record)), record, view, visitor);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private T findRecord(int bucket, T record) {
+        ChainedBlock block = this.primaryFile.pinBlock(bucket);
         int nextIndex = block.getNextBlockIndex();
+        // Prvý preplňujúci blok sa začne načítavať ešte pred prehľadaním primárneho bloku
+        CompletableFuture<ChainedBlock<T>> pending = this.overflowFile.prefetchBlock(nextIndex);
+        try {
+            int r = block.indexOf(record);
+            if (r != -1) {
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                IRecord<T> rec = block.getRecordAt(r);
+                return rec.createCopy();
+            }
+        } finally {
+            this.primaryFile.unpinBlock(bucket, false);
+            this.primaryFile.releaseBlock(block);
+        }
         if (nextIndex != -1) {
-            return this.overflowFile.findInChain(nextIndex, record);
+            return this.overflowFile.findInChain(nextIndex, record, pending);
         }
         return null;
     }
 
+    private <V extends IRecordView<T>> boolean visitRecord(int bucket, T record, V view, Consumer<? super V> visitor) {
+        ChainedBlock<T> block = this.primaryFile.pinBlock(bucket);
+        int nextIndex = block.getNextBlockIndex();
+        CompletableFuture<ChainedBlock<T>> pending = this.overflowFile.prefetchBlock(nextIndex);
+        try {
+            int r = block.indexOf(record);
+            if (r != -1) {
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                visitor.accept(block.viewAt(r, view));
+                return true;
+            }
+        } finally {
+            this.primaryFile.unpinBlock(bucket, false);
+            this.primaryFile.releaseBlock(block);
+        }
+        if (nextIndex != -1) {
+            return this.overflowFile.visitInChain(nextIndex, record, view, visitor, pending);
+        }
+        return false;
+    }
+
     public void edit(T newRecord) {
-        long key = this.keyExtractor.apply(newRecord);
-        int bucket = this.bucketForKey(key);
-        ChainedBlock block = this.primaryFile.getBlock(bucket);
-        for (int r = 0; r < block.getValidCount(); r++) {
-            IRecord<T> rec = block.getRecordAt(r);
-            if (rec != null && rec.isEqual(newRecord)) {
+        this.primaryFile.requireEncodable(newRecord);
+        if (this.concurrent) {
+            int bucket = this.lockBucket(newRecord);
+            try {
+                this.captureConcurrently(() -> {
+                    this.editRecord(bucket, newRecord);
+                    return null;
+                });
+            } finally {
+                this.unlockBucket(bucket);
+            }
+            this.awaitCommit();
+            this.afterOperation();
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.beginOperation();
+            try {
+                this.editRecord(this.bucketForKey(this.keyExtractor.apply(newRecord)), newRecord);
+                this.commitOperation();
+            } catch (RuntimeException e) {
+                this.abortOperation();
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.awaitCommit();
+    }
+
+    private void editRecord(int bucket, T newRecord) {
+        ChainedBlock block = this.primaryFile.pinBlock(bucket);
+        int nextIndex = block.getNextBlockIndex();
+        CompletableFuture<ChainedBlock<T>> pending = this.overflowFile.prefetchBlock(nextIndex);
+        try {
+            int r = block.indexOf(newRecord);
+            if (r != -1) {
+                if (pending != null) {
+                    pending.cancel(false);
+                }
                 block.updateRecordAt(r, newRecord);
                 this.primaryFile.writeBlockToFile(block, bucket);
                 return;
             }
+        } finally {
+            this.primaryFile.unpinBlock(bucket, false);
+            this.primaryFile.releaseBlock(block);
         }
-        int nextIndex = block.getNextBlockIndex();
         if (nextIndex != -1) {
-            boolean updated = this.overflowFile.editInChain(nextIndex, newRecord);
+            boolean updated = this.overflowFile.editInChain(nextIndex, newRecord, pending);
             if (updated) {
                 return;
             }
@@ -150,7 +549,126 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         throw new NoSuchElementException("Record to edit not found.");
     }
 
+    // Diera po zmazanom zázname sa zaplní posledným záznamom reťazca, vyprázdnený posledný preplňujúci blok sa z reťazca odpojí
+    private T deleteRecord(int bucket, T record) {
+        ArrayList<Integer> indices = new ArrayList<>();
+        ArrayList<ChainedBlock<T>> chain = new ArrayList<>();
+        int foundPosition = -1;
+        int slot = -1;
+        int index = bucket;
+        ChainedBlock<T> block = this.primaryFile.borrowBlock(bucket);
+        while (true) {
+            indices.add(index);
+            chain.add(block);
+            if (foundPosition == -1) {
+                slot = block.indexOf(record);
+                if (slot != -1) {
+                    foundPosition = chain.size() - 1;
+                }
+            }
+            index = block.getNextBlockIndex();
+            if (index == -1) {
+                break;
+            }
+            block = this.overflowFile.borrowBlock(index);
+        }
+
+        T removed = null;
+        try {
+            if (foundPosition == -1) {
+                return null;
+            }
+            int lastPosition = chain.size() - 1;
+            ChainedBlock<T> found = chain.get(foundPosition);
+            ChainedBlock<T> last = chain.get(lastPosition);
+            removed = found.removeAt(slot);
+            if (foundPosition != lastPosition) {
+                found.addRecord(last.removeAt(last.getValidCount() - 1));
+            }
+            boolean unlinked = lastPosition > 0 && last.getValidCount() == 0;
+            if (unlinked) {
+                chain.get(lastPosition - 1).setNextBlockIndex(-1);
+            }
+            this.writeChainBlock(found, indices.get(foundPosition), foundPosition == 0);
+            if (lastPosition != foundPosition) {
+                this.writeChainBlock(last, indices.get(lastPosition), lastPosition == 0);
+            }
+            if (unlinked && lastPosition - 1 != foundPosition) {
+                this.writeChainBlock(chain.get(lastPosition - 1), indices.get(lastPosition - 1), lastPosition - 1 == 0);
+            }
+            // vyprázdnený blok sa uvoľní až po odpojení z reťazca, inak by ho súbežné vloženie mohlo prideliť skôr
+            HeapFile<ChainedBlock<T>, T> lastFile = lastPosition == 0 ? this.primaryFile : this.overflowFile;
+            lastFile.adjustTotalRecords(-1);
+            lastFile.updateListsAfterDelete(indices.get(lastPosition), last);
+            this.overflowFile.trimTrailingEmptyBlocks();
+        } finally {
+            for (int j = 0; j < chain.size(); j++) {
+                this.releaseChainBlock(chain.get(j), j == 0);
+            }
+        }
+        return removed;
+    }
+
+    // Záznam sa vloží pod pruhom bucketu, štiepenie prebehne až po jeho uvoľnení
+    private void insertConcurrently(T record) {
+        this.throwMaintenanceFailure();
+        int bucket = this.lockBucket(record);
+        boolean overflowAllocated;
+        try {
+            overflowAllocated = this.captureConcurrently(() -> this.appendToBucket(bucket, record));
+        } finally {
+            this.unlockBucket(bucket);
+        }
+        if (this.backgroundSplitting) {
+            if (overflowAllocated || this.splitNeeded(false)) {
+                this.lock.lock();
+                try {
+                    this.scheduleSplits(overflowAllocated);
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        } else if (this.splitNeeded(overflowAllocated)) {
+            this.structureLock.lock();
+            try {
+                this.splitNextBucketIfNeeded(overflowAllocated);
+            } finally {
+                this.structureLock.unlock();
+            }
+        }
+        this.awaitCommit();
+        this.afterOperation();
+    }
+
+    private T deleteConcurrently(T record) {
+        int bucket = this.lockBucket(record);
+        T removed;
+        try {
+            removed = this.captureConcurrently(() -> this.deleteRecord(bucket, record));
+        } finally {
+            this.unlockBucket(bucket);
+        }
+        if (removed != null && this.mergeNeeded()) {
+            this.structureLock.lock();
+            try {
+                this.mergeBucketsIfNeeded();
+            } finally {
+                this.structureLock.unlock();
+            }
+        }
+        this.awaitCommit();
+        this.afterOperation();
+        return removed;
+    }
+
     private void insertIntoBucket(int bucket, T record) {
+        boolean overflowAllocated = this.appendToBucket(bucket, record);
+        this.splitNextBucketIfNeeded(overflowAllocated);
+    }
+
+    // Vráti true, ak bolo treba pridať do reťazca nový preplňujúci blok
+    private boolean appendToBucket(int bucket, T record) {
+        boolean overflowAllocated = false;
         HeapFile.BlockInsertResult<T> result = this.primaryFile.insertRecordWithMetadata(record, bucket);
 
         if (result.blockIndex == -1) {
@@ -160,11 +678,14 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
             // najdenie posledneho bloku v retazci
             while (b.getNextBlockIndex() != -1 && b.getValidCount() == b.getBlockFactor()) {
                 currentIndex = b.getNextBlockIndex();
-                b = this.overflowFile.getBlock(currentIndex);
+                this.releaseChainBlock(b, isPrimary);
+                b = this.overflowFile.borrowBlock(currentIndex);
                 isPrimary = false;
             }
             if (b.getValidCount() == b.getBlockFactor()) {
                 HeapFile.BlockInsertResult<T> newResult = this.overflowFile.insertRecordAsNewBlock(record);
+                this.overflowFile.releaseBlock((ChainedBlock<T>) newResult.block);
+                overflowAllocated = true;
                 b.setNextBlockIndex(newResult.blockIndex);
                 if (isPrimary) {
                     this.primaryFile.writeBlockToFile(b, bucket);
@@ -172,20 +693,335 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
                     this.overflowFile.writeBlockToFile(b, currentIndex);
                 }
             } else {
-                this.overflowFile.insertRecordWithMetadata(record, currentIndex);
+                HeapFile.BlockInsertResult<T> tailResult = this.overflowFile.insertRecordWithMetadata(record, currentIndex);
+                this.overflowFile.releaseBlock((ChainedBlock<T>) tailResult.block);
+            }
+            this.releaseChainBlock(b, isPrimary);
+        } else {
+            this.primaryFile.releaseBlock((ChainedBlock<T>) result.block);
+        }
+        return overflowAllocated;
+    }
+
+    private void writeChainBlock(ChainedBlock<T> block, int index, boolean primary) {
+        if (primary) {
+            this.primaryFile.writeBlockToFile(block, index);
+        } else {
+            this.overflowFile.writeBlockToFile(block, index);
+        }
+    }
+
+    private void releaseChainBlock(ChainedBlock<T> block, boolean primary) {
+        if (primary) {
+            this.primaryFile.releaseBlock(block);
+        } else {
+            this.overflowFile.releaseBlock(block);
+        }
+    }
+
+    private double loadFactor() {
+        return (double) (this.primaryFile.getTotalRecords() + this.overflowFile.getTotalRecords()) / ((this.nextSplit + (1 << this.i)) * this.primaryFile.getBlockFactor());
+    }
+
+    private boolean splitNeeded(boolean overflowAllocated) {
+        int records = this.primaryFile.getTotalRecords() + this.overflowFile.getTotalRecords();
+        int buckets = this.nextSplit + (1 << this.i);
+        return this.splitPolicy.shouldSplit(records, buckets, this.primaryFile.getBlockFactor(), this.overflowFile.getUsedBlocks(), overflowAllocated);
+    }
+
+    // Štiepenia po jednom vložení idú v cykle a sú obmedzené politikou, nie rekurziou zo splitBucket
+    private void splitNextBucketIfNeeded(boolean overflowAllocated) {
+        for (int splits = 0; splits < this.splitPolicy.getMaxSplitsPerInsert(); splits++) {
+            if (!this.splitNeeded(overflowAllocated && splits == 0)) {
+                return;
+            }
+            this.splitBucketLocked();
+        }
+    }
+
+    // Vloženie iba pridá štiepenia do rozpočtu, vykoná ich vlákno údržby
+    private void scheduleSplits(boolean overflowAllocated) {
+        if (overflowAllocated) {
+            this.pendingOverflowAllocations++;
+        }
+        if (!this.splitNeeded(overflowAllocated)) {
+            return;
+        }
+        this.splitBudget = (int) Math.min(Integer.MAX_VALUE, (long) this.splitBudget + this.splitPolicy.getMaxSplitsPerInsert());
+        if (!this.maintenanceScheduled) {
+            this.maintenanceScheduled = true;
+            MAINTENANCE_EXECUTOR.execute(this::runMaintenance);
+        }
+    }
+
+    // Štiepenie beží pod zámkom štruktúry a pruhmi dvoch bucketov, zámok súboru sa berie iba na čerpanie rozpočtu;
+    // po MAINTENANCE_BATCH štiepeniach sa kolo zaradí znova, aby pomalý súbor nezdržal údržbu ostatných.
+    // Na fsync logu vlákno údržby nečaká, záznam štiepenia zapíše najbližší commit alebo checkpoint
+    private void runMaintenance() {
+        for (int splits = 0; splits < MAINTENANCE_BATCH; splits++) {
+            this.lock.lock();
+            try {
+                boolean overflowAllocated = this.pendingOverflowAllocations > 0;
+                if (this.closed || !this.backgroundSplitting || this.splitBudget == 0 || !this.splitNeeded(overflowAllocated)) {
+                    this.splitBudget = 0;
+                    this.pendingOverflowAllocations = 0;
+                    this.finishMaintenance();
+                    return;
+                }
+                if (overflowAllocated) {
+                    this.pendingOverflowAllocations--;
+                }
+                this.splitBudget--;
+            } finally {
+                this.lock.unlock();
+            }
+            try {
+                this.splitNextBucketOperation();
+            } catch (RuntimeException e) {
+                this.lock.lock();
+                try {
+                    this.maintenanceFailure = e;
+                    this.finishMaintenance();
+                } finally {
+                    this.lock.unlock();
+                }
+                return;
+            }
+        }
+        MAINTENANCE_EXECUTOR.execute(this::runMaintenance);
+    }
+
+    // Volá sa pod zámkom súboru
+    private void finishMaintenance() {
+        this.maintenanceScheduled = false;
+        this.maintenanceDone.signalAll();
+    }
+
+    private void throwMaintenanceFailure() {
+        if (this.maintenanceFailure != null) {
+            RuntimeException failure = this.maintenanceFailure;
+            this.maintenanceFailure = null;
+            throw new IllegalStateException("Background split failed", failure);
+        }
+    }
+
+    public boolean isBackgroundSplitting() {
+        return this.backgroundSplitting;
+    }
+
+    // Štiepenie na pozadí potrebuje súbežný režim, vloženia do ostatných bucketov ho obchádzajú cez pruhy;
+    // vypnutie nechá rozpracované štiepenia na najbližšie vloženie, ktoré ich dobehne synchrónne
+    public void setBackgroundSplitting(boolean backgroundSplitting) {
+        this.lock.lock();
+        try {
+            if (backgroundSplitting && !this.concurrent) {
+                throw new IllegalStateException("Background splitting requires concurrent access");
             }
+            this.backgroundSplitting = backgroundSplitting;
+        } finally {
+            this.lock.unlock();
         }
-        this.splitNextBucketIfNeeded();
     }
 
-    private void splitNextBucketIfNeeded() {
-        double loadFactor = (double) (this.primaryFile.getTotalRecords() + this.overflowFile.getTotalRecords()) / ((this.nextSplit + (1 << this.i)) * this.primaryFile.getBlockFactor());
-        if (loadFactor > 0.75) {
-            this.splitNextBucket();
+    // Počká, kým údržba tohto súboru nespracuje všetky naplánované štiepenia
+    public void awaitBackgroundSplits() {
+        if (this.lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Cannot wait for background splits while holding the file lock");
         }
+        this.lock.lock();
+        try {
+            while (this.maintenanceScheduled) {
+                this.maintenanceDone.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for background splits", e);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean mergeNeeded() {
+        return this.nextSplit + (1 << this.i) > (1 << this.minLevel) && this.loadFactor() < this.lowWaterMark;
+    }
+
+    private void mergeBucketsIfNeeded() {
+        while (this.mergeNeeded()) {
+            int level = this.nextSplit == 0 ? this.i - 1 : this.i;
+            int target = (this.nextSplit == 0 ? 1 << level : this.nextSplit) - 1;
+            int image = target + (1 << level);
+            if (this.concurrent) {
+                this.lockBuckets(target, image);
+            }
+            boolean merged;
+            try {
+                merged = this.captureConcurrently(() -> {
+                    this.overflowFile.lockAllocation();
+                    try {
+                        int mergedRecords = this.chainRecordCount(target) + this.chainRecordCount(image);
+                        if (!this.splitPolicy.allowsMerge(mergedRecords, this.nextSplit + (1 << this.i),
+                                this.primaryFile.getBlockFactor(), this.overflowFile.getUsedBlocks())) {
+                            return false;
+                        }
+                        this.mergeLastBucket(level, target);
+                        return true;
+                    } finally {
+                        this.overflowFile.unlockAllocation();
+                    }
+                });
+            } finally {
+                if (this.concurrent) {
+                    this.unlockBuckets(target, image);
+                }
+            }
+            if (!merged) {
+                return;
+            }
+        }
+    }
+
+    // Opak štiepenia: záznamy posledného bucketu sa vrátia do bucketu, z ktorého vznikol, a jeho bloky sa uvoľnia
+    private void mergeLastBucket(int level, int target) {
+        int image = target + (1 << level);
+        this.setDirectory(level, target);
+
+        List<T> records = new ArrayList<>();
+        ChainedBlock<T> block = this.primaryFile.getBlock(image);
+        this.collectRecords(block, records);
+        int next = block.getNextBlockIndex();
+        this.primaryFile.adjustTotalRecords(-block.getValidCount());
+        block.setValidCount(0);
+        block.setNextBlockIndex(-1);
+        this.primaryFile.writeBlockToFile(block, image);
+        this.primaryFile.updateListsAfterDelete(image, block);
+        while (next != -1) {
+            block = this.overflowFile.getBlock(next);
+            this.collectRecords(block, records);
+            int following = block.getNextBlockIndex();
+            this.overflowFile.adjustTotalRecords(-block.getValidCount());
+            block.setValidCount(0);
+            block.setNextBlockIndex(-1);
+            this.overflowFile.writeBlockToFile(block, next);
+            this.overflowFile.updateListsAfterDelete(next, block);
+            next = following;
+        }
+        // živé buckety sú pod indexom image, aj keď sú prázdne
+        this.primaryFile.trimTrailingEmptyBlocks(image);
+
+        for (T rec : records) {
+            this.appendToBucket(target, rec);
+        }
+        this.overflowFile.trimTrailingEmptyBlocks();
+    }
+
+    private int chainRecordCount(int bucket) {
+        ChainedBlock<T> block = this.primaryFile.borrowBlock(bucket);
+        int count = block.getValidCount();
+        int next = block.getNextBlockIndex();
+        this.primaryFile.releaseBlock(block);
+        while (next != -1) {
+            block = this.overflowFile.borrowBlock(next);
+            count += block.getValidCount();
+            next = block.getNextBlockIndex();
+            this.overflowFile.releaseBlock(block);
+        }
+        return count;
+    }
+
+    private void collectRecords(ChainedBlock<T> block, List<T> records) {
+        for (int r = 0; r < block.getValidCount(); r++) {
+            records.add(block.getRecordAt(r).createCopy());
+        }
+    }
+
+    public double getLowWaterMark() {
+        return this.lowWaterMark;
+    }
+
+    // Po mazaní sa buckety zlučujú, kým faktor naplnenia neprekročí túto hranicu; 0 zlučovanie vypne
+    public void setLowWaterMark(double lowWaterMark) {
+        if (lowWaterMark < 0 || lowWaterMark >= 1) {
+            throw new IllegalArgumentException("Low-water mark must be in [0, 1)");
+        }
+        if (!this.splitPolicy.allowsLowWaterMark(lowWaterMark)) {
+            throw new IllegalArgumentException("Low-water mark " + lowWaterMark + " would make merges and splits alternate");
+        }
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    public KeyHashing getKeyHashing() {
+        return this.keyHashing;
+    }
+
+    public SplitPolicy getSplitPolicy() {
+        return this.splitPolicy;
+    }
+
+    public void setSplitPolicy(SplitPolicy splitPolicy) {
+        if (!splitPolicy.allowsLowWaterMark(this.lowWaterMark)) {
+            throw new IllegalArgumentException("Split policy conflicts with low-water mark " + this.lowWaterMark);
+        }
+        this.splitPolicy = splitPolicy;
     }
 
     public void splitNextBucket() {
+        this.splitNextBucketOperation();
+        this.awaitCommit();
+    }
+
+    private void splitNextBucketOperation() {
+        if (this.concurrent) {
+            this.structureLock.lock();
+            try {
+                if (!this.closed) {
+                    this.splitBucketLocked();
+                }
+            } finally {
+                this.structureLock.unlock();
+            }
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.beginOperation();
+            try {
+                this.splitBucketLocked();
+                this.commitOperation();
+            } catch (RuntimeException e) {
+                this.abortOperation();
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // V súbežnom režime sa zamknú pruhy štiepeného aj nového bucketu; zámok alokácie preplňujúceho súboru drží
+    // bloky starého reťazca mimo dosahu iných vložení, kým sa rozdelia medzi oba buckety
+    private void splitBucketLocked() {
+        int bucketToSplit = this.nextSplit;
+        int newBucketIndex = bucketToSplit + (1 << this.i);
+        if (this.concurrent) {
+            this.lockBuckets(bucketToSplit, newBucketIndex);
+        }
+        try {
+            this.captureConcurrently(() -> {
+                this.overflowFile.lockAllocation();
+                try {
+                    this.splitBucket();
+                } finally {
+                    this.overflowFile.unlockAllocation();
+                }
+                return null;
+            });
+        } finally {
+            if (this.concurrent) {
+                this.unlockBuckets(bucketToSplit, newBucketIndex);
+            }
+        }
+    }
+
+    private void splitBucket() {
         int bucketToSplit = this.nextSplit;
 
         List<T> all = new ArrayList<>();
@@ -211,6 +1047,7 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
             index = b.getNextBlockIndex();
             chainedBlocks.add(b);
         }
+        int chainLength = chainedBlocks.size();
         int newBucketIndex = bucketToSplit + (1 << this.i);
 
         //rehashovanie a vloženie záznamov do správnych bucketov
@@ -218,7 +1055,7 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         LinkedList<T> newBacketRecords = new LinkedList<>();
         for (T rec : all) {
             long k = this.keyExtractor.apply(rec);
-            long h = Math.abs(k);
+            long h = this.hashKey(k);
             int mod = (1 << this.i);
             long target = h & (((long) mod << 1) - 1); // mod 2^(i+1)
             if (target == bucketToSplit) {
@@ -231,12 +1068,13 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         ArrayList<Integer> pointers = this.insertIntoOldBucketNoSplit(bucketToSplit, chainedBlocks, oldBacketRecords);
         this.insertIntoBucketNoSplit(newBucketIndex, chainedBlocks, pointers, newBacketRecords);
 
-        this.nextSplit++;
-        if (this.nextSplit >= (1 << this.i)) {
-            this.nextSplit = 0;
-            this.i++;
+        if (this.nextSplit + 1 >= (1 << this.i)) {
+            this.setDirectory(this.i + 1, 0);
+        } else {
+            this.setDirectory(this.i, this.nextSplit + 1);
         }
-        this.splitNextBucketIfNeeded();
+        // celý pôvodný reťazec sa prečíta a prepíše, k tomu primárny blok nového bucketu
+        this.splitPolicy.recordSplit(chainLength + 1);
     }
 
     private ArrayList<Integer> insertIntoOldBucketNoSplit(int blockIndex, ArrayList<ChainedBlock<T>> oldChain, LinkedList<T> oldBacketRecords) {
@@ -290,11 +1128,15 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
             }
         }
         this.primaryFile.writeBlockToFile(oldChain.getFirst(), blockIndex);
+        ArrayList<Integer> overflowIndices = new ArrayList<>();
+        ArrayList<ChainedBlock<T>> overflowBlocks = new ArrayList<>();
         for (int j = 1; j < oldChain.size(); j++) {
             if(oldChain.get(j).getValidCount() > 0) {
-                this.overflowFile.writeBlockToFile(oldChain.get(j), nextBLockPointers.get(j - 1));
+                overflowIndices.add(nextBLockPointers.get(j - 1));
+                overflowBlocks.add(oldChain.get(j));
             }
         }
+        this.writeBatch(this.overflowFile, overflowIndices, overflowBlocks);
         ArrayList<ChainedBlock<T>> unusedBlocks = new ArrayList<>();
         for (int j = 1; j < oldChain.size(); j++) {
             if (oldChain.get(j).getValidCount() == 0) {
@@ -305,17 +1147,16 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         }
         oldChain.clear();
         oldChain.addAll(unusedBlocks);
-        int primaryDiff = newPrimaryRecords - previousPrimaryRecords;
-        this.primaryFile.setTotalRecords(this.primaryFile.getTotalRecords() + primaryDiff);
-
-        int overflowDiff = newOverflowRecords - previousOverflowRecords;
-        this.overflowFile.setTotalRecords(this.overflowFile.getTotalRecords() + overflowDiff);
+        this.primaryFile.adjustTotalRecords(newPrimaryRecords - previousPrimaryRecords);
+        this.overflowFile.adjustTotalRecords(newOverflowRecords - previousOverflowRecords);
         return nextBLockPointers;
     }
 
     private void insertIntoBucketNoSplit(int bucket, ArrayList<ChainedBlock<T>> oldChain, ArrayList<Integer> pointers, LinkedList<T> records) {
-        ChainedBlock<T> block = new ChainedBlock<>(this.primaryFile.getRecordClass(), this.primaryFile.getBlockSize());
+        ChainedBlock<T> block = this.primaryFile.createBlock();
         int newPrimaryRecords = 0;
+        ArrayList<Integer> overflowIndices = new ArrayList<>();
+        ArrayList<ChainedBlock<T>> overflowBlocks = new ArrayList<>();
         while (block.getValidCount() < block.getBlockFactor() && !records.isEmpty()) {
             block.addRecord(records.removeFirst());
             newPrimaryRecords++;
@@ -323,17 +1164,25 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         if (records.isEmpty() && newPrimaryRecords > 0) {
             this.primaryFile.incrementTotalBlocks();
             this.primaryFile.writeBlockToFile(block, bucket);
-            this.primaryFile.setTotalRecords(this.primaryFile.getTotalRecords() + newPrimaryRecords);
+            this.primaryFile.adjustTotalRecords(newPrimaryRecords);
             if (!oldChain.isEmpty()) {
                 for (int j = 0; j < oldChain.size(); j++) {
-                    this.overflowFile.writeBlockToFile(oldChain.get(j), pointers.get(j));
+                    overflowIndices.add(pointers.get(j));
+                    overflowBlocks.add(oldChain.get(j));
                 }
             }
+            this.writeBatch(this.overflowFile, overflowIndices, overflowBlocks);
             this.overflowFile.trimTrailingEmptyBlocks();
             return;
         } else if (newPrimaryRecords == 0) {
             this.primaryFile.incrementTotalBlocks();
             this.primaryFile.writeBlockToFile(block, bucket);
+            for (int j = 0; j < oldChain.size(); j++) {
+                overflowIndices.add(pointers.get(j));
+                overflowBlocks.add(oldChain.get(j));
+            }
+            this.writeBatch(this.overflowFile, overflowIndices, overflowBlocks);
+            this.overflowFile.trimTrailingEmptyBlocks();
             return;
         }
         ChainedBlock<T> lastBlock = block;
@@ -349,13 +1198,15 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
             }
             this.overflowFile.updateListsAfterInsert(pointers.get(i), oldChain.get(i));
             overflowBlocksUsed++;
-            this.overflowFile.writeBlockToFile(oldChain.get(i), pointers.get(i));
+            overflowIndices.add(pointers.get(i));
+            overflowBlocks.add(oldChain.get(i));
             lastBlock.setNextBlockIndex(pointers.get(i));
             if (lastIsPrimary) {
                 this.primaryFile.incrementTotalBlocks();
                 this.primaryFile.writeBlockToFile(lastBlock, lastBlockIndex);
             } else {
-                this.overflowFile.writeBlockToFile(lastBlock, lastBlockIndex);
+                overflowIndices.add(lastBlockIndex);
+                overflowBlocks.add(lastBlock);
             }
             lastBlock = oldChain.get(i);
             lastBlockIndex = pointers.get(i);
@@ -364,18 +1215,384 @@ public class LinearHashFile<T extends IRecord<T> & IHashable> {
         }
         if (!oldChain.isEmpty()) {
             for (int j = overflowBlocksUsed; j < oldChain.size(); j++) {
-                this.overflowFile.writeBlockToFile(oldChain.get(j), pointers.get(j));
+                overflowIndices.add(pointers.get(j));
+                overflowBlocks.add(oldChain.get(j));
             }
         }
-        this.primaryFile.setTotalRecords(this.primaryFile.getTotalRecords() + newPrimaryRecords);
-        this.overflowFile.setTotalRecords(this.overflowFile.getTotalRecords() + newOverflowRecords);
+        this.primaryFile.adjustTotalRecords(newPrimaryRecords);
+        this.overflowFile.adjustTotalRecords(newOverflowRecords);
+        this.writeBatch(this.overflowFile, overflowIndices, overflowBlocks);
         this.overflowFile.trimTrailingEmptyBlocks();
     }
 
+    private void writeBatch(HeapFile<ChainedBlock<T>, T> file, ArrayList<Integer> indices, ArrayList<ChainedBlock<T>> blocks) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        int[] indexArray = new int[indices.size()];
+        for (int j = 0; j < indexArray.length; j++) {
+            indexArray[j] = indices.get(j);
+        }
+        file.writeBlocks(indexArray, blocks.toArray(new ChainedBlock[0]));
+    }
+
+    public void enableWriteAheadLog(long commitIntervalMs) {
+        this.lockExclusive();
+        try {
+            if (this.writeAheadLog != null) {
+                throw new IllegalStateException("Write-ahead log is already enabled");
+            }
+            this.checkpoint();
+            this.writeAheadLog = new WriteAheadLog(this.walFile, commitIntervalMs);
+            this.primaryFile.setWriteAheadLog(this.writeAheadLog);
+            this.overflowFile.setWriteAheadLog(this.writeAheadLog);
+        } finally {
+            this.unlockExclusive();
+        }
+    }
+
+    public boolean isConcurrentAccess() {
+        return this.concurrent;
+    }
+
+    // Súbežný prístup: vyhľadávania a zmeny v rôznych bucketoch bežia paralelne, každá operácia je trvalá sama osebe;
+    // zapína sa pred zdieľaním súboru medzi vláknami, s úložiskom cez kanál. S logom sa zmeny zachytávajú po jednej
+    // a zapisovatelia, ktorí commitnú počas rozpracovaného fsync, čakajú spoločne na ďalší
+    public void setConcurrentAccess(boolean concurrent) {
+        this.lockExclusive();
+        try {
+            if (!concurrent && this.backgroundSplitting) {
+                throw new IllegalStateException("Disable background splitting before concurrent access");
+            }
+            this.primaryFile.setConcurrent(concurrent);
+            this.overflowFile.setConcurrent(concurrent);
+        } finally {
+            this.unlockExclusive();
+        }
+        this.concurrent = concurrent;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return this.writeAheadLog;
+    }
+
+    // Dáta a metadáta sa zapíšu natrvalo, potom sa log môže vyprázdniť
+    public void checkpoint() {
+        this.lockExclusive();
+        try {
+            if (this.writeAheadLog != null) {
+                this.writeAheadLog.flush();
+            }
+            this.primaryFile.flush();
+            this.overflowFile.flush();
+            this.primaryFile.saveMetadata(true);
+            this.overflowFile.saveMetadata(true);
+            this.saveDirectory(true);
+            if (this.writeAheadLog != null) {
+                this.writeAheadLog.reset();
+            }
+        } finally {
+            this.unlockExclusive();
+        }
+    }
+
+    private void beginOperation() {
+        if (this.operationDepth++ > 0 || this.writeAheadLog == null) {
+            return;
+        }
+        this.capturedLevel = this.i;
+        this.capturedNextSplit = this.nextSplit;
+        this.primaryFile.beginCapture();
+        this.overflowFile.beginCapture();
+    }
+
+    private void commitOperation() {
+        if (--this.operationDepth > 0) {
+            return;
+        }
+        if (this.writeAheadLog == null) {
+            this.afterOperation();
+            return;
+        }
+        // s logom určuje trvanlivosť operácie interval commitu logu, nie DurabilityMode; na commit sa čaká v awaitCommit
+        long lsn = this.writeAheadLog.append(this.buildLogRecord());
+        this.primaryFile.applyCapturedWrites(lsn);
+        this.overflowFile.applyCapturedWrites(lsn);
+        long[] pending = this.commitLsn.get();
+        pending[0] = Math.max(pending[0], lsn);
+    }
+
+    // Volá sa po uvoľnení zámkov súboru: zapisovatelia, ktorí medzitým pridali záznam do logu, zdieľajú jeden fsync,
+    // potom sa na miesto zapíšu stránky s už trvalým záznamom
+    private void awaitCommit() {
+        long[] pending = this.commitLsn.get();
+        if (pending[0] == 0) {
+            return;
+        }
+        long lsn = pending[0];
+        pending[0] = 0;
+        this.writeAheadLog.commit(lsn);
+        this.primaryFile.writeDurablePages();
+        this.overflowFile.writeDurablePages();
+        if (this.writeAheadLog.size() > CHECKPOINT_LOG_SIZE) {
+            this.checkpoint();
+        }
+    }
+
+    // V súbežnom režime s logom je zmena pod pruhmi samostatná zachytená operácia, zapisovatelia sa radia za walLock
+    private <R> R captureConcurrently(Supplier<R> change) {
+        if (!this.concurrent || this.writeAheadLog == null) {
+            return change.get();
+        }
+        this.walLock.lock();
+        try {
+            this.beginOperation();
+            try {
+                R result = change.get();
+                this.commitOperation();
+                return result;
+            } catch (RuntimeException e) {
+                this.abortOperation();
+                throw e;
+            }
+        } finally {
+            this.walLock.unlock();
+        }
+    }
+
+    private void abortOperation() {
+        this.operationDepth = 0;
+        if (this.writeAheadLog == null) {
+            return;
+        }
+        // zmeny v pamäti sa vrátia iba pre operáciu, ktorej zápisy ešte neboli použité
+        boolean primaryRolledBack = this.primaryFile.rollbackCapture();
+        boolean overflowRolledBack = this.overflowFile.rollbackCapture();
+        if (primaryRolledBack || overflowRolledBack) {
+            this.setDirectory(this.capturedLevel, this.capturedNextSplit);
+        }
+    }
+
+    // Obsah záznamu: i, nextSplit, hlavičky oboch súborov a obrazy všetkých zmenených blokov
+    private ByteBuffer buildLogRecord() {
+        Map<Integer, ChainedBlock<T>> primaryWrites = this.primaryFile.getCapturedWrites();
+        Map<Integer, ChainedBlock<T>> overflowWrites = this.overflowFile.getCapturedWrites();
+        int pageHeader = Byte.BYTES + Integer.BYTES;
+        int size = 7 * Integer.BYTES
+                + primaryWrites.size() * (pageHeader + this.primaryFile.getBlockSize())
+                + overflowWrites.size() * (pageHeader + this.overflowFile.getBlockSize());
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(this.i);
+        buffer.putInt(this.nextSplit);
+        buffer.putInt(this.primaryFile.getTotalBlocks());
+        buffer.putInt(this.primaryFile.getTotalRecords());
+        buffer.putInt(this.overflowFile.getTotalBlocks());
+        buffer.putInt(this.overflowFile.getTotalRecords());
+        buffer.putInt(primaryWrites.size() + overflowWrites.size());
+        this.putPages(buffer, PRIMARY_FILE_ID, primaryWrites, this.primaryFile.getBlockSize());
+        this.putPages(buffer, OVERFLOW_FILE_ID, overflowWrites, this.overflowFile.getBlockSize());
+        buffer.flip();
+        return buffer;
+    }
+
+    private void putPages(ByteBuffer buffer, byte fileId, Map<Integer, ChainedBlock<T>> pages, int blockSize) {
+        for (Map.Entry<Integer, ChainedBlock<T>> page : pages.entrySet()) {
+            buffer.put(fileId);
+            buffer.putInt(page.getKey());
+            page.getValue().writeTo(buffer);
+        }
+    }
+
+    private void recover() {
+        WriteAheadLog log = new WriteAheadLog(this.walFile, 0);
+        int[] lastHeader = new int[6];
+        int records = log.replay(record -> {
+            for (int h = 0; h < lastHeader.length; h++) {
+                lastHeader[h] = record.getInt();
+            }
+            int pageCount = record.getInt();
+            for (int p = 0; p < pageCount; p++) {
+                HeapFile<ChainedBlock<T>, T> file = record.get() == PRIMARY_FILE_ID ? this.primaryFile : this.overflowFile;
+                int blockIndex = record.getInt();
+                ByteBuffer page = record.slice(record.position(), file.getBlockSize());
+                file.writeRawBlock(blockIndex, page);
+                record.position(record.position() + file.getBlockSize());
+            }
+        });
+        if (records > 0) {
+            this.i = lastHeader[0];
+            this.nextSplit = lastHeader[1];
+            this.primaryFile.recoverState(lastHeader[2], lastHeader[3]);
+            this.overflowFile.recoverState(lastHeader[4], lastHeader[5]);
+        }
+        this.primaryFile.flush();
+        this.overflowFile.flush();
+        this.primaryFile.saveMetadata(true);
+        this.overflowFile.saveMetadata(true);
+        this.saveDirectory(true);
+        log.reset();
+        log.close();
+    }
+
+    public void setDurability(DurabilityMode durability) {
+        this.setDurability(durability, 0);
+    }
+
+    public void setDurability(DurabilityMode durability, long syncIntervalMs) {
+        this.primaryFile.setDurability(durability, syncIntervalMs);
+        this.overflowFile.setDurability(durability, syncIntervalMs);
+        this.durability = durability;
+        this.syncIntervalMs = syncIntervalMs;
+        this.cancelScheduledSync();
+    }
+
+    public DurabilityMode getDurability() {
+        return this.durability;
+    }
+
+    // V súbežnom režime sa čaká na dokončenie rozpracovaného štiepenia alebo zlučovania, metadáta oboch súborov
+    // a adresár sa tak nikdy neuložia uprostred zmeny smerovania
+    public void sync() {
+        this.lock.lock();
+        boolean structure = this.concurrent;
+        if (structure) {
+            this.structureLock.lock();
+        }
+        try {
+            if (this.writeAheadLog != null) {
+                this.checkpoint();
+            } else {
+                this.primaryFile.sync();
+                this.overflowFile.sync();
+                this.saveDirectory(true);
+            }
+            this.lastSyncTime = System.currentTimeMillis();
+        } finally {
+            if (structure) {
+                this.structureLock.unlock();
+            }
+            this.lock.unlock();
+        }
+    }
+
+    private void afterOperation() {
+        if (this.writeAheadLog != null) {
+            return;
+        }
+        if (this.durability == DurabilityMode.FSYNC_PER_OPERATION) {
+            this.sync();
+        } else if (this.durability == DurabilityMode.FSYNC_EVERY_N_MS && this.syncScheduled.compareAndSet(false, true)) {
+            // prvá zmena po synchronizácii naplánuje sync najneskôr o interval od predošlého
+            long delay = Math.max(0, this.lastSyncTime + this.syncIntervalMs - System.currentTimeMillis());
+            this.scheduledSync = SYNC_EXECUTOR.schedule(this::runScheduledSync, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Chyba synchronizácie na pozadí sa ohlási pri ďalšom vkladaní, rovnako ako chyba štiepenia
+    private void runScheduledSync() {
+        this.lock.lock();
+        try {
+            if (!this.syncScheduled.getAndSet(false) || this.closed) {
+                return;
+            }
+            this.sync();
+        } catch (RuntimeException e) {
+            this.maintenanceFailure = e;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void cancelScheduledSync() {
+        ScheduledFuture<?> pending = this.scheduledSync;
+        if (this.syncScheduled.getAndSet(false) && pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    public void setBufferPool(BufferPool bufferPool) {
+        this.primaryFile.setBufferPool(bufferPool);
+        this.overflowFile.setBufferPool(bufferPool);
+    }
+
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        this.overflowFile.setPrefetchEnabled(prefetchEnabled);
+    }
+
+    public boolean isPrefetchEnabled() {
+        return this.overflowFile.isPrefetchEnabled();
+    }
+
+    public BufferPool getBufferPool() {
+        return this.primaryFile.getBufferPool();
+    }
+
+    public RecordFormat getRecordFormat() {
+        return this.primaryFile.getRecordFormat();
+    }
+
+    public void setRecordFormat(RecordFormat recordFormat) {
+        if (this.primaryFile.getTotalRecords() + this.overflowFile.getTotalRecords() > 0) {
+            throw new IllegalStateException("Record format can only be changed on an empty file");
+        }
+        this.primaryFile.setRecordFormat(recordFormat);
+        this.overflowFile.setRecordFormat(recordFormat);
+    }
+
+    public boolean isFingerprintsEnabled() {
+        return this.primaryFile.isFingerprintsEnabled();
+    }
+
+    public void setFingerprintsEnabled(boolean fingerprints) {
+        if (this.primaryFile.getTotalRecords() + this.overflowFile.getTotalRecords() > 0) {
+            throw new IllegalStateException("Fingerprints can only be changed on an empty file");
+        }
+        this.primaryFile.setFingerprintsEnabled(fingerprints);
+        this.overflowFile.setFingerprintsEnabled(fingerprints);
+    }
+
+    // Prevod existujúceho súboru do iného formátu: všetky záznamy sa prejdú po bucketoch a vložia do cieľového súboru
+    public void migrateTo(LinearHashFile<T> target) {
+        this.lockExclusive();
+        try {
+            for (int bucket = 0; bucket < this.primaryFile.getTotalBlocks(); bucket++) {
+                ChainedBlock<T> block = this.primaryFile.getBlock(bucket);
+                while (true) {
+                    for (int r = 0; r < block.getValidCount(); r++) {
+                        IRecord<T> rec = block.getRecordAt(r);
+                        target.insert(rec.createCopy());
+                    }
+                    if (block.getNextBlockIndex() == -1) {
+                        break;
+                    }
+                    block = this.overflowFile.getBlock(block.getNextBlockIndex());
+                }
+            }
+            target.sync();
+        } finally {
+            this.unlockExclusive();
+        }
+    }
+
+    // Neodbehnuté štiepenia na pozadí sa zahodia, súbor je konzistentný aj bez nich
     public void close() {
-        this.saveDirectory();
-        this.primaryFile.close();
-        this.overflowFile.close();
+        this.lockExclusive();
+        try {
+            this.closed = true;
+            if (this.writeAheadLog != null) {
+                this.checkpoint();
+                this.writeAheadLog.close();
+                this.writeAheadLog = null;
+                this.primaryFile.setWriteAheadLog(null);
+                this.overflowFile.setWriteAheadLog(null);
+            }
+            this.saveDirectory();
+            this.primaryFile.close();
+            this.overflowFile.close();
+            this.cancelScheduledSync();
+        } finally {
+            this.unlockExclusive();
+        }
     }
 
     public HeapFile<ChainedBlock<T>,T> getPrimaryFile() {
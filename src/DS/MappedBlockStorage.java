@@ -0,0 +1,175 @@
+package DS;
+
+import Interface.IBlockStorage;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+// Súbor aj mapovanie rastú po celých úsekoch, logická veľkosť sa drží zvlášť a súbor sa na ňu oreže pri skrátení
+// a pri zatvorení. Pred orezaním sa dotknuté úseky odmapujú, inak by skrátenie na Windows zlyhalo na živom mapovaní.
+public class MappedBlockStorage implements IBlockStorage {
+    private static final int TARGET_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // bez explicitného odmapovania sa súbor nedá skrátiť, úložisko sa preto v takom JVM odmietne otvoriť
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final ArrayList<MappedByteBuffer> chunks;
+    private long logicalSize;
+
+    public MappedBlockStorage(File file, int blockSize) throws IOException {
+        if (!isSupported()) {
+            throw new IllegalStateException("Memory-mapped storage needs sun.misc.Unsafe.invokeCleaner to unmap chunks");
+        }
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Veľkosť úseku je násobok veľkosti bloku, takže blok nikdy neleží v dvoch mapovaniach
+        this.chunkSize = Math.max(1, TARGET_CHUNK_SIZE / blockSize) * blockSize;
+        this.chunks = new ArrayList<>();
+        this.logicalSize = this.channel.size();
+        this.mapTo(this.logicalSize);
+    }
+
+    static boolean isSupported() {
+        return INVOKE_CLEANER != null;
+    }
+
+    // Synchronizované kvôli prednačítaniu z iného vlákna: úsek sa nesmie odmapovať počas čítania
+    @Override
+    public synchronized void read(ByteBuffer destination, long position) throws IOException {
+        if (position + destination.remaining() > this.logicalSize) {
+            throw new EOFException("Position " + position + " is beyond the end of " + this.file.getName());
+        }
+        long current = position;
+        while (destination.hasRemaining()) {
+            MappedByteBuffer chunk = this.chunk((int) (current / this.chunkSize));
+            int offset = (int) (current % this.chunkSize);
+            int length = Math.min(destination.remaining(), this.chunkSize - offset);
+            destination.put(destination.position(), chunk, offset, length);
+            destination.position(destination.position() + length);
+            current += length;
+        }
+    }
+
+    @Override
+    public synchronized void write(ByteBuffer source, long position) throws IOException {
+        long end = position + source.remaining();
+        if (end > this.logicalSize) {
+            this.mapTo(end);
+            this.logicalSize = end;
+        }
+        long current = position;
+        while (source.hasRemaining()) {
+            MappedByteBuffer chunk = this.chunk((int) (current / this.chunkSize));
+            int offset = (int) (current % this.chunkSize);
+            int length = Math.min(source.remaining(), this.chunkSize - offset);
+            chunk.put(offset, source, source.position(), length);
+            source.position(source.position() + length);
+            current += length;
+        }
+    }
+
+    @Override
+    public synchronized void write(ByteBuffer[] sources, long position) throws IOException {
+        long current = position;
+        for (ByteBuffer source : sources) {
+            int length = source.remaining();
+            this.write(source, current);
+            current += length;
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return this.logicalSize;
+    }
+
+    @Override
+    public synchronized void truncate(long size) throws IOException {
+        if (size >= this.logicalSize) {
+            return;
+        }
+        this.unmapFrom(size);
+        this.logicalSize = size;
+        this.channel.truncate(size);
+    }
+
+    @Override
+    public synchronized void force() throws IOException {
+        for (MappedByteBuffer chunk : this.chunks) {
+            chunk.force();
+        }
+        this.channel.force(true);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.channel.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.force();
+        this.unmapFrom(0);
+        this.channel.truncate(this.logicalSize);
+        this.channel.close();
+    }
+
+    // Úsek za orezaným koncom sa namapuje znova až pri prvom prístupe
+    private MappedByteBuffer chunk(int index) throws IOException {
+        if (index >= this.chunks.size()) {
+            this.mapTo((long) (index + 1) * this.chunkSize);
+        }
+        return this.chunks.get(index);
+    }
+
+    // Mapuje sa vždy celý úsek, mapovanie za koncom súboru ho predĺži, takže pripájanie blokov nevolá map pri každom bloku
+    private void mapTo(long size) throws IOException {
+        while ((long) this.chunks.size() * this.chunkSize < size) {
+            long offset = (long) this.chunks.size() * this.chunkSize;
+            this.chunks.add(this.channel.map(FileChannel.MapMode.READ_WRITE, offset, this.chunkSize));
+        }
+    }
+
+    // Ostanú iba úseky ležiace celé pod hranicou size
+    private void unmapFrom(long size) {
+        long fullChunks = size / this.chunkSize;
+        while (this.chunks.size() > fullChunks) {
+            unmap(this.chunks.removeLast());
+        }
+    }
+
+    private static void unmap(MappedByteBuffer chunk) {
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, chunk);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot unmap " + chunk, e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package DS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Formát: magic (int), verzia (int), obsah, CRC32 všetkého predtým (long)
+public final class MetadataFile {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES;
+
+    private MetadataFile() {
+    }
+
+    public static ByteBuffer allocate(int payloadSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize + TRAILER_SIZE);
+        buffer.position(HEADER_SIZE);
+        return buffer;
+    }
+
+    public static void write(File file, int magic, int version, ByteBuffer buffer, boolean sync) {
+        int payloadEnd = buffer.position();
+        buffer.putInt(0, magic);
+        buffer.putInt(Integer.BYTES, version);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, payloadEnd);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving metadata file: " + file.getName(), e);
+        }
+    }
+
+    // Vráti buffer nastavený na začiatok obsahu, verzia je dostupná cez version(buffer)
+    public static ByteBuffer read(File file, int magic, int maxVersion) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading metadata file: " + file.getName(), e);
+        }
+        if (bytes.length < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IllegalStateException("Metadata file is truncated: " + file.getName());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int payloadEnd = bytes.length - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, payloadEnd);
+        if (crc.getValue() != buffer.getLong(payloadEnd)) {
+            throw new IllegalStateException("Metadata file checksum mismatch: " + file.getName());
+        }
+        if (buffer.getInt(0) != magic) {
+            throw new IllegalStateException("Unexpected metadata file type: " + file.getName());
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version < 1 || version > maxVersion) {
+            throw new IllegalStateException("Unsupported metadata version " + version + ": " + file.getName());
+        }
+        buffer.position(HEADER_SIZE);
+        buffer.limit(payloadEnd);
+        return buffer;
+    }
+
+    public static int version(ByteBuffer buffer) {
+        return buffer.getInt(Integer.BYTES);
+    }
+}
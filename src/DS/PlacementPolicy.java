@@ -0,0 +1,8 @@
+package DS;
+
+public enum PlacementPolicy {
+    // Čiastočne zaplnený blok s najnižším indexom, pôvodné správanie HeapFile
+    FIRST_FIT,
+    // Najplnší blok, ktorý ešte má voľný slot; pri záznamoch pevnej dĺžky je to zároveň best fit
+    FULLEST_FIRST
+}
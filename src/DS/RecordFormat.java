@@ -0,0 +1,8 @@
+package DS;
+
+public enum RecordFormat {
+    // pôvodný formát, int dĺžka a každý znak reťazca na 2 bajtoch
+    WIDE,
+    // 1 bajt dĺžky a reťazec v ISO-8859-2 v poli pevnej šírky, každý znak zaberie 1 bajt
+    COMPACT
+}
@@ -0,0 +1,24 @@
+package DS;
+
+// RID záznamu v HeapFile zbalený do long: horných 32 bitov je index bloku, dolných 32 bitov slot v bloku
+public final class RecordId {
+
+    private RecordId() {
+    }
+
+    public static long of(int blockIndex, int slot) {
+        return ((long) blockIndex << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    public static int blockIndex(long rid) {
+        return (int) (rid >>> 32);
+    }
+
+    public static int slot(long rid) {
+        return (int) rid;
+    }
+
+    public static String toString(long rid) {
+        return blockIndex(rid) + ":" + slot(rid);
+    }
+}
@@ -0,0 +1,8 @@
+package DS;
+
+public enum SlotMode {
+    // Zmazaný slot sa zaplní posledným záznamom bloku, platné sloty sú vždy 0..validCount-1
+    SWAP_LAST,
+    // Záznam ostáva v slote až do zmazania, obsadené sloty eviduje bitmapa na konci bloku
+    STABLE
+}
@@ -0,0 +1,109 @@
+package DS;
+
+// Rozhoduje, kedy sa po vložení štiepi ďalší bucket; inštancia si počíta vykonané štiepenia a dotknuté bloky
+public abstract class SplitPolicy {
+    private int maxSplitsPerInsert;
+    private long splits;
+    private long blocksTouched;
+
+    protected SplitPolicy() {
+        this.maxSplitsPerInsert = Integer.MAX_VALUE;
+    }
+
+    // Pôvodné správanie: štiepi sa, kým počet záznamov presahuje threshold kapacity primárnych blokov
+    public static SplitPolicy loadFactor(double threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Load factor threshold must be positive");
+        }
+        return new SplitPolicy() {
+            @Override
+            protected boolean shouldSplit(int records, int buckets, int blockFactor, int overflowBlocks, boolean overflowAllocated) {
+                return (double) records / ((long) buckets * blockFactor) > threshold;
+            }
+
+            @Override
+            boolean allowsLowWaterMark(double lowWaterMark) {
+                return lowWaterMark < threshold;
+            }
+        };
+    }
+
+    // Štiepi sa vždy, keď vloženie pridalo do reťazca nový preplňujúci blok
+    public static SplitPolicy onOverflowAllocation() {
+        return new SplitPolicy() {
+            @Override
+            protected boolean shouldSplit(int records, int buckets, int blockFactor, int overflowBlocks, boolean overflowAllocated) {
+                return overflowAllocated;
+            }
+
+            // štiepenie vyvolá ktorékoľvek nové preplnenie bez ohľadu na naplnenie, zlúčenie podľa low-water mark
+            // by teda najbližšie preplnenie hneď vrátilo; pri tejto politike sa buckety nezlučujú
+            @Override
+            boolean allowsMerge(int mergedRecords, int buckets, int blockFactor, int overflowBlocks) {
+                return false;
+            }
+        };
+    }
+
+    // Priemerná dĺžka reťazca v blokoch vrátane primárneho bloku, 1.0 znamená žiadne preplňujúce bloky
+    public static SplitPolicy maxAverageChainLength(double maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Average chain length cannot be below 1");
+        }
+        return new SplitPolicy() {
+            @Override
+            protected boolean shouldSplit(int records, int buckets, int blockFactor, int overflowBlocks, boolean overflowAllocated) {
+                return (double) (buckets + overflowBlocks) / buckets > maxLength;
+            }
+
+            // zlúčený bucket sa zmestí do primárneho bloku a ani s ďalším preplňujúcim blokom po zlúčení
+            // priemerná dĺžka reťazca neprekročí hranicu, jedno vloženie teda zlúčenie nevráti
+            @Override
+            boolean allowsMerge(int mergedRecords, int buckets, int blockFactor, int overflowBlocks) {
+                return mergedRecords < blockFactor && (double) (buckets + overflowBlocks) / (buckets - 1) <= maxLength;
+            }
+        };
+    }
+
+    // overflowAllocated platí iba pre prvé rozhodnutie po vložení, ďalšie štiepenia v tej istej sérii ho už nevidia
+    protected abstract boolean shouldSplit(int records, int buckets, int blockFactor, int overflowBlocks, boolean overflowAllocated);
+
+    boolean allowsLowWaterMark(double lowWaterMark) {
+        return true;
+    }
+
+    // Zlučovanie spúšťa low-water mark; politika ho môže odmietnuť, ak by zlúčenie hneď vyvolalo nové štiepenie.
+    // mergedRecords je počet záznamov oboch zlučovaných bucketov, buckets a overflowBlocks platia pred zlúčením
+    boolean allowsMerge(int mergedRecords, int buckets, int blockFactor, int overflowBlocks) {
+        return true;
+    }
+
+    public int getMaxSplitsPerInsert() {
+        return this.maxSplitsPerInsert;
+    }
+
+    public void setMaxSplitsPerInsert(int maxSplitsPerInsert) {
+        if (maxSplitsPerInsert <= 0) {
+            throw new IllegalArgumentException("At least one split per insert must be allowed");
+        }
+        this.maxSplitsPerInsert = maxSplitsPerInsert;
+    }
+
+    void recordSplit(int blocksTouched) {
+        this.splits++;
+        this.blocksTouched += blocksTouched;
+    }
+
+    public long getSplits() {
+        return this.splits;
+    }
+
+    public long getBlocksTouched() {
+        return this.blocksTouched;
+    }
+
+    public void resetStatistics() {
+        this.splits = 0;
+        this.blocksTouched = 0;
+    }
+}
@@ -0,0 +1,223 @@
+package DS;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Záznam v logu: dĺžka obsahu (int), obsah, CRC32 obsahu (long)
+public class WriteAheadLog {
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long commitIntervalMs;
+    private final ScheduledExecutorService flusher;
+    private long baseLsn;
+    private long appendedLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private long appendedRecords;
+    private long forceCount;
+
+    public WriteAheadLog(File file, long commitIntervalMs) {
+        if (commitIntervalMs < 0) {
+            throw new IllegalArgumentException("Commit interval must be >= 0");
+        }
+        this.file = file;
+        this.commitIntervalMs = commitIntervalMs;
+        try {
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.baseLsn = 0;
+            this.appendedLsn = this.channel.size();
+            this.durableLsn = this.appendedLsn;
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening write-ahead log: " + file.getName(), e);
+        }
+        if (commitIntervalMs > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "wal-flusher-" + file.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flush, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public synchronized long append(ByteBuffer payload) {
+        int length = payload.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(length + RECORD_OVERHEAD);
+        record.putInt(length);
+        record.put(payload);
+        record.putLong(crc.getValue());
+        record.flip();
+        try {
+            long position = this.appendedLsn - this.baseLsn;
+            while (record.hasRemaining()) {
+                position += this.channel.write(record, position);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error appending to write-ahead log: " + this.file.getName(), e);
+        }
+        this.appendedLsn += length + RECORD_OVERHEAD;
+        this.appendedRecords++;
+        return this.appendedLsn;
+    }
+
+    // Pri nulovom intervale čaká na fsync, inak fsync urobí periodicky flusher
+    public void commit(long lsn) {
+        if (this.commitIntervalMs == 0) {
+            this.awaitDurable(lsn);
+        }
+    }
+
+    // Skupinový commit: jedno vlákno (líder) urobí fsync za všetky čakajúce, ostatné počkajú na výsledok
+    public void awaitDurable(long lsn) {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (this.durableLsn < lsn && this.flushing) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for write-ahead log flush", e);
+                    }
+                }
+                if (this.durableLsn >= lsn) {
+                    return;
+                }
+                this.flushing = true;
+                target = this.appendedLsn;
+            }
+            boolean forced = false;
+            try {
+                this.channel.force(false);
+                forced = true;
+            } catch (IOException e) {
+                throw new RuntimeException("Error flushing write-ahead log: " + this.file.getName(), e);
+            } finally {
+                synchronized (this) {
+                    if (forced) {
+                        this.durableLsn = Math.max(this.durableLsn, target);
+                        this.forceCount++;
+                    }
+                    this.flushing = false;
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+
+    public void flush() {
+        long target;
+        synchronized (this) {
+            target = this.appendedLsn;
+        }
+        this.awaitDurable(target);
+    }
+
+    // Prehrá všetky celé záznamy, poškodený alebo neúplný koniec logu sa odreže
+    public int replay(Consumer<ByteBuffer> consumer) {
+        int records = 0;
+        long position = 0;
+        try {
+            long size = this.channel.size();
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+            while (position + RECORD_OVERHEAD <= size) {
+                lengthBuffer.clear();
+                this.readFully(lengthBuffer, position);
+                int length = lengthBuffer.getInt(0);
+                if (length < 0 || position + length + RECORD_OVERHEAD > size) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length + Long.BYTES);
+                this.readFully(body, position + Integer.BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(body.array(), 0, length);
+                if (crc.getValue() != body.getLong(length)) {
+                    break;
+                }
+                body.limit(length);
+                body.rewind();
+                consumer.accept(body);
+                records++;
+                position += length + RECORD_OVERHEAD;
+            }
+            if (position < size) {
+                this.channel.truncate(position);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error replaying write-ahead log: " + this.file.getName(), e);
+        }
+        synchronized (this) {
+            this.appendedLsn = this.baseLsn + position;
+            this.durableLsn = this.appendedLsn;
+        }
+        return records;
+    }
+
+    // Volá sa po checkpointe, LSN pokračujú ďalej aj po vyprázdnení súboru
+    public synchronized void reset() {
+        try {
+            this.channel.truncate(0);
+            this.channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error resetting write-ahead log: " + this.file.getName(), e);
+        }
+        this.baseLsn = this.appendedLsn;
+        this.durableLsn = this.appendedLsn;
+    }
+
+    public synchronized long getDurableLsn() {
+        return this.durableLsn;
+    }
+
+    public synchronized long size() {
+        return this.appendedLsn - this.baseLsn;
+    }
+
+    public void close() {
+        if (this.flusher != null) {
+            this.flusher.shutdown();
+        }
+        this.flush();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing write-ahead log: " + this.file.getName(), e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of write-ahead log: " + this.file.getName());
+            }
+        }
+    }
+
+    public long getCommitIntervalMs() {
+        return this.commitIntervalMs;
+    }
+
+    public synchronized long getAppendedRecords() {
+        return this.appendedRecords;
+    }
+
+    public synchronized long getForceCount() {
+        return this.forceCount;
+    }
+}
@@ -0,0 +1,95 @@
+package Data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+// Reťazce kompaktného formátu: 1 bajt dĺžky a znaky v ISO-8859-2 (Latin-2) v poli pevnej šírky maxLength.
+// Namiesto Latin-1 je zvolený Latin-2, lebo Latin-1 nemá slovenské znaky ako č, ď, ľ, ň, š, ť, ž a ŕ,
+// mená s nimi by sa nedali uložiť. Latin-2 pokrýva celú slovenčinu a každý znak zaberie stále práve 1 bajt.
+// Dlhšia hodnota sa rovnako ako vo WIDE oreže na maxLength, odmietne sa iba znak mimo Latin-2.
+final class CompactStrings {
+    private static final char[] DECODE = new char[256];
+    // Najvyšší znak Latin-2 je U+02DD, vyššie znaky sa zakódovať nedajú
+    private static final byte[] ENCODE = new byte[0x2DE];
+    private static final boolean[] ENCODABLE = new boolean[0x2DE];
+
+    static {
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        String decoded = new String(all, Charset.forName("ISO-8859-2"));
+        Arrays.fill(DECODE, '?');
+        for (int i = 0; i < decoded.length(); i++) {
+            char c = decoded.charAt(i);
+            DECODE[i] = c;
+            if (c < ENCODE.length) {
+                ENCODE[c] = (byte) i;
+                ENCODABLE[c] = true;
+            }
+        }
+    }
+
+    private CompactStrings() {
+    }
+
+    static int fieldSize(int maxLength) {
+        return 1 + maxLength;
+    }
+
+    // Zapísať sa dá, ak sú v Latin-2 všetky znaky, ktoré po orezaní na maxLength zostanú
+    static boolean fits(String value, int maxLength) {
+        int length = Math.min(value.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= ENCODABLE.length || !ENCODABLE[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Zapíše najviac maxLength znakov a zvyšok poľa vyplní nulami, znak mimo Latin-2 sa odmietne
+    static void write(ByteBuffer buffer, String value, int maxLength) {
+        int length = Math.min(value.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= ENCODABLE.length || !ENCODABLE[c]) {
+                throw new IllegalArgumentException("Character U+" + Integer.toHexString(c) + " is not in ISO-8859-2: " + value);
+            }
+        }
+        buffer.put((byte) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(ENCODE[value.charAt(i)]);
+        }
+        for (int i = length; i < maxLength; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    static void appendAt(StringBuilder sb, ByteBuffer buffer, int offset, int maxLength) {
+        int length = length(buffer, offset, maxLength);
+        for (int i = 0; i < length; i++) {
+            sb.append(DECODE[buffer.get(offset + 1 + i) & 0xFF]);
+        }
+    }
+
+    // Znaky sa porovnajú priamo po bajtoch bez dekódovania celého poľa
+    static boolean equalsAt(ByteBuffer buffer, int offset, int maxLength, String value) {
+        int length = length(buffer, offset, maxLength);
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (DECODE[buffer.get(offset + 1 + i) & 0xFF] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int length(ByteBuffer buffer, int offset, int maxLength) {
+        return Math.min(buffer.get(offset) & 0xFF, maxLength);
+    }
+}
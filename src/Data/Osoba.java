@@ -1,24 +1,35 @@
 package Data;
 
+import DS.RecordFormat;
 import Interface.IHashable;
 import Interface.IRecord;
 
-import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Random;
 
 public class Osoba implements IRecord<Osoba>, IHashable {
     private String meno;
-    private final int MAX_MENO_LENGTH = 15;
+    private static final int MAX_MENO_LENGTH = 15;
     private String priezvisko;
-    private final int MAX_PRIEZVISKO_LENGTH = 14;
+    private static final int MAX_PRIEZVISKO_LENGTH = 14;
     private Date datumNarodenia;
     private String UUID;
-    private final int UUID_LENGTH = 10;
+    private static final int UUID_LENGTH = 10;
     private Integer[] testyPacienta = new Integer[6];
     private static final int TESTY_ARRAY_SIZE = 6;
 
+    // Rozloženie záznamu v bloku, z rovnakých polí číta aj OsobaView; poradie musí sedieť s writeTo a readFrom
+    static final RecordSchema.StringField MENO = RecordSchema.string(MAX_MENO_LENGTH);
+    static final RecordSchema.StringField PRIEZVISKO = RecordSchema.string(MAX_PRIEZVISKO_LENGTH);
+    static final RecordSchema.DateField DATUM_NARODENIA = RecordSchema.date();
+    static final RecordSchema.StringField UUID_FIELD = RecordSchema.string(UUID_LENGTH);
+    static final RecordSchema.IntArrayField TESTY = RecordSchema.intArray(TESTY_ARRAY_SIZE);
+    static final RecordSchema SCHEMA = new RecordSchema("Osoba", MENO, PRIEZVISKO, DATUM_NARODENIA, UUID_FIELD, TESTY);
+
     public Osoba() {
         this.meno = "";
         this.priezvisko = "";
@@ -74,93 +85,73 @@ public class Osoba implements IRecord<Osoba>, IHashable {
 
     @Override
     public Osoba fromByteArray(byte[] bytesArray) {
-        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytesArray))) {
-            int menoLen = in.readInt();
-            String meno = this.readFixedString(in, this.MAX_MENO_LENGTH).substring(0, menoLen);
-
-            int priezLen = in.readInt();
-            String priezvisko = this.readFixedString(in, this.MAX_PRIEZVISKO_LENGTH).substring(0, priezLen);
-
-            long dateLong = in.readLong();
-            Date datum = new Date(dateLong);
-
-            int uuidLen = in.readInt();
-            String uuid = this.readFixedString(in, this.UUID_LENGTH).substring(0, uuidLen);
+        return this.readFrom(ByteBuffer.wrap(bytesArray));
+    }
 
-            Integer[] testy = new Integer[TESTY_ARRAY_SIZE];
-            for (int i = 0; i < TESTY_ARRAY_SIZE; i++) {
-                int testID = in.readInt();
-                testy[i] = (testID != -1) ? testID : null;
-            }
+    @Override
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(this.getSize());
+        this.writeTo(buffer);
+        return buffer.array();
+    }
 
-            this.meno = meno;
-            this.priezvisko = priezvisko;
-            this.datumNarodenia = datum;
-            this.UUID = uuid;
-            this.testyPacienta = testy;
+    @Override
+    public Osoba readFrom(ByteBuffer buffer) {
+        return this.readFrom(buffer, RecordFormat.WIDE);
+    }
 
+    @Override
+    public Osoba readFrom(ByteBuffer buffer, RecordFormat format) {
+        try {
+            this.meno = MENO.read(buffer, format);
+            this.priezvisko = PRIEZVISKO.read(buffer, format);
+            this.datumNarodenia = DATUM_NARODENIA.read(buffer);
+            this.UUID = UUID_FIELD.read(buffer, format);
+            this.testyPacienta = TESTY.read(buffer);
             return this;
-
-        } catch (IOException e) {
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
             throw new RuntimeException("Error deserializing Osoba", e);
         }
     }
 
     @Override
-    public byte[] toByteArray() {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             DataOutputStream out = new DataOutputStream(baos)) {
-            // Meno
-            out.writeInt(Math.min(this.meno.length(), this.MAX_MENO_LENGTH));
-            this.writeFixedString(out, this.meno, this.MAX_MENO_LENGTH);
-
-            // Priezvisko
-            out.writeInt(Math.min(this.priezvisko.length(), this.MAX_PRIEZVISKO_LENGTH));
-            this.writeFixedString(out, this.priezvisko, this.MAX_PRIEZVISKO_LENGTH);
-
-            // Date
-            out.writeLong(this.datumNarodenia.getTime());
-
-            // UUID
-            out.writeInt(Math.min(this.UUID.length(), this.UUID_LENGTH));
-            this.writeFixedString(out, this.UUID, this.UUID_LENGTH);
-
-            for (int i = 0; i < TESTY_ARRAY_SIZE; i++) {
-                if (this.testyPacienta[i] != null) {
-                    out.writeInt(this.testyPacienta[i]);
-                } else {
-                    out.writeInt(-1);
-                }
-            }
-
-            return baos.toByteArray();
+    public void writeTo(ByteBuffer buffer) {
+        this.writeTo(buffer, RecordFormat.WIDE);
+    }
 
-        } catch (IOException e) {
+    @Override
+    public void writeTo(ByteBuffer buffer, RecordFormat format) {
+        try {
+            MENO.write(buffer, this.meno, format);
+            PRIEZVISKO.write(buffer, this.priezvisko, format);
+            DATUM_NARODENIA.write(buffer, this.datumNarodenia);
+            UUID_FIELD.write(buffer, this.UUID, format);
+            TESTY.write(buffer, this.testyPacienta);
+        } catch (BufferOverflowException e) {
             throw new RuntimeException("Error serializing Osoba", e);
         }
     }
-    private void writeFixedString(DataOutputStream out, String value, int maxLen) throws IOException {
-        for (int i = 0; i < maxLen; i++) {
-            char c = (i < value.length()) ? value.charAt(i) : 0;
-            out.writeChar(c);
-        }
+
+    @Override
+    public boolean fits(RecordFormat format) {
+        return MENO.fits(this.meno, format)
+                && PRIEZVISKO.fits(this.priezvisko, format)
+                && UUID_FIELD.fits(this.UUID, format);
     }
 
-    private String readFixedString(DataInputStream in, int maxLen) throws IOException {
-        char[] chars = new char[maxLen];
-        for (int i = 0; i < maxLen; i++) {
-            chars[i] = in.readChar();
-        }
-        return new String(chars).replace("\u0000", "");
+    @Override
+    public boolean isEqualEncoded(ByteBuffer buffer, int offset, RecordFormat format) {
+        return UUID_FIELD.equalsAt(buffer, offset + UUID_FIELD.offset(format), format, this.UUID);
     }
 
     @Override
     public int getSize() {
-        int testySize = TESTY_ARRAY_SIZE * Integer.BYTES;
-        return Integer.BYTES * 3 +
-                (Character.BYTES * (this.MAX_MENO_LENGTH + this.MAX_PRIEZVISKO_LENGTH + this.UUID_LENGTH)) +
-                Long.BYTES +
-                testySize;
+        return this.getSize(RecordFormat.WIDE);
+    }
+
+    @Override
+    public int getSize(RecordFormat format) {
+        return SCHEMA.getSize(format);
     }
 
     @Override
@@ -0,0 +1,107 @@
+package Data;
+
+import DS.RecordFormat;
+import Interface.IRecordView;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+public class OsobaView implements IRecordView<Osoba> {
+    // Offsety polí berie zo schémy Osoba, rozloženie sa tak nedá rozísť s Osoba.writeTo
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private ByteBuffer buffer;
+    private int offset;
+    private RecordFormat format;
+
+    @Override
+    public OsobaView wrap(ByteBuffer buffer, int offset, RecordFormat format) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.format = format;
+        return this;
+    }
+
+    @Override
+    public OsobaView wrap(ByteBuffer buffer, int offset) {
+        return this.wrap(buffer, offset, RecordFormat.WIDE);
+    }
+
+    public String getMeno() {
+        return Osoba.MENO.getAt(this.buffer, this.at(Osoba.MENO), this.format);
+    }
+
+    public String getPriezvisko() {
+        return Osoba.PRIEZVISKO.getAt(this.buffer, this.at(Osoba.PRIEZVISKO), this.format);
+    }
+
+    public long getDatumNarodeniaMillis() {
+        return Osoba.DATUM_NARODENIA.getMillisAt(this.buffer, this.at(Osoba.DATUM_NARODENIA));
+    }
+
+    public Date getDatumNarodenia() {
+        return new Date(this.getDatumNarodeniaMillis());
+    }
+
+    public String getUUID() {
+        return Osoba.UUID_FIELD.getAt(this.buffer, this.at(Osoba.UUID_FIELD), this.format);
+    }
+
+    public boolean hasUUID(String uuid) {
+        return Osoba.UUID_FIELD.equalsAt(this.buffer, this.at(Osoba.UUID_FIELD), this.format, uuid);
+    }
+
+    public int getTestCount() {
+        return Osoba.TESTY.getLength();
+    }
+
+    // -1 znamená prázdny slot testu
+    public int getTestID(int index) {
+        return Osoba.TESTY.getAt(this.buffer, this.at(Osoba.TESTY), index);
+    }
+
+    @Override
+    public Osoba materialize() {
+        return new Osoba().readFrom(this.buffer.duplicate().position(this.offset), this.format);
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+        sb.append("Osoba{");
+        Osoba.MENO.appendAt(sb, this.buffer, this.at(Osoba.MENO), this.format);
+        sb.append(';');
+        Osoba.PRIEZVISKO.appendAt(sb, this.buffer, this.at(Osoba.PRIEZVISKO), this.format);
+        sb.append(';');
+        DATE_FORMAT.formatTo(Instant.ofEpochMilli(this.getDatumNarodeniaMillis()).atZone(ZoneId.systemDefault()), sb);
+        sb.append(';');
+        Osoba.UUID_FIELD.appendAt(sb, this.buffer, this.at(Osoba.UUID_FIELD), this.format);
+        sb.append(";Testy:[");
+        int testCount = this.getTestCount();
+        for (int i = 0; i < testCount; i++) {
+            int testID = this.getTestID(i);
+            if (testID != -1) {
+                sb.append(testID);
+            } else {
+                sb.append("null");
+            }
+            if (i < testCount - 1) {
+                sb.append(',');
+            }
+        }
+        sb.append("]}");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        this.appendTo(sb);
+        return sb.toString();
+    }
+
+    private int at(RecordSchema.Field field) {
+        return this.offset + field.offset(this.format);
+    }
+}
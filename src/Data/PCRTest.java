@@ -1,20 +1,33 @@
 package Data;
 
+import DS.RecordFormat;
 import Interface.IHashable;
 import Interface.IRecord;
 
-import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Date;
 
 public class PCRTest implements IRecord<PCRTest>, IHashable {
     private Date datumTestu;
     private String UUIDPacienta;
-    private final int MAX_UUID_LENGTH = 10;
+    private static final int MAX_UUID_LENGTH = 10;
     private int kodTestu;
     private boolean vysledokTestu;
     private double hodnotaTestu;
     private String poznamka;
-    private final int MAX_POZNAMKA_LENGTH = 11;
+    private static final int MAX_POZNAMKA_LENGTH = 11;
+
+    // Rozloženie záznamu v bloku, z rovnakých polí číta aj PCRTestView; poradie musí sedieť s writeTo a readFrom
+    static final RecordSchema.DateField DATUM_TESTU = RecordSchema.date();
+    static final RecordSchema.StringField UUID_PACIENTA = RecordSchema.string(MAX_UUID_LENGTH);
+    static final RecordSchema.IntField KOD_TESTU = RecordSchema.int32();
+    static final RecordSchema.BooleanField VYSLEDOK_TESTU = RecordSchema.bool();
+    static final RecordSchema.DoubleField HODNOTA_TESTU = RecordSchema.float64();
+    static final RecordSchema.StringField POZNAMKA = RecordSchema.string(MAX_POZNAMKA_LENGTH);
+    static final RecordSchema SCHEMA = new RecordSchema("PCRTest",
+            DATUM_TESTU, UUID_PACIENTA, KOD_TESTU, VYSLEDOK_TESTU, HODNOTA_TESTU, POZNAMKA);
 
     public PCRTest() {
         this.datumTestu = new Date(0);
@@ -95,52 +108,64 @@ public class PCRTest implements IRecord<PCRTest>, IHashable {
 
     @Override
     public PCRTest fromByteArray(byte[] bytesArray) {
-        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytesArray))) {
-            this.datumTestu = new Date(in.readLong());
-            int uuidLength = in.readInt();
-            this.UUIDPacienta = this.readFixedString(in, this.MAX_UUID_LENGTH).substring(0, uuidLength);
-            this.kodTestu = in.readInt();
-            this.vysledokTestu = in.readBoolean();
-            this.hodnotaTestu = in.readDouble();
-            int poznamkaLength = in.readInt();
-            this.poznamka = this.readFixedString(in, this.MAX_POZNAMKA_LENGTH).substring(0, poznamkaLength);
-            return this;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return this.readFrom(ByteBuffer.wrap(bytesArray));
     }
 
     @Override
     public byte[] toByteArray() {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             DataOutputStream out = new DataOutputStream(baos)) {
-            out.writeLong(this.datumTestu.getTime());
-            out.writeInt(Math.min(this.UUIDPacienta.length(), this.MAX_UUID_LENGTH));
-            this.writeFixedString(out, this.UUIDPacienta, this.MAX_UUID_LENGTH);
-            out.writeInt(this.kodTestu);
-            out.writeBoolean(this.vysledokTestu);
-            out.writeDouble(this.hodnotaTestu);
-            out.writeInt(Math.min(this.poznamka.length(), this.MAX_POZNAMKA_LENGTH));
-            this.writeFixedString(out, this.poznamka, this.MAX_POZNAMKA_LENGTH);
-            return baos.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        ByteBuffer buffer = ByteBuffer.allocate(this.getSize());
+        this.writeTo(buffer);
+        return buffer.array();
+    }
+
+    @Override
+    public PCRTest readFrom(ByteBuffer buffer) {
+        return this.readFrom(buffer, RecordFormat.WIDE);
     }
 
-    private void writeFixedString(DataOutputStream out, String value, int maxLen) throws IOException {
-        for (int i = 0; i < maxLen; i++) {
-            char c = (i < value.length()) ? value.charAt(i) : 0;
-            out.writeChar(c);
+    @Override
+    public PCRTest readFrom(ByteBuffer buffer, RecordFormat format) {
+        try {
+            this.datumTestu = DATUM_TESTU.read(buffer);
+            this.UUIDPacienta = UUID_PACIENTA.read(buffer, format);
+            this.kodTestu = KOD_TESTU.read(buffer);
+            this.vysledokTestu = VYSLEDOK_TESTU.read(buffer);
+            this.hodnotaTestu = HODNOTA_TESTU.read(buffer);
+            this.poznamka = POZNAMKA.read(buffer, format);
+            return this;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("Error deserializing PCRTest", e);
         }
     }
 
-    private String readFixedString(DataInputStream in, int maxLen) throws IOException {
-        char[] chars = new char[maxLen];
-        for (int i = 0; i < maxLen; i++) {
-            chars[i] = in.readChar();
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        this.writeTo(buffer, RecordFormat.WIDE);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer, RecordFormat format) {
+        try {
+            DATUM_TESTU.write(buffer, this.datumTestu);
+            UUID_PACIENTA.write(buffer, this.UUIDPacienta, format);
+            KOD_TESTU.write(buffer, this.kodTestu);
+            VYSLEDOK_TESTU.write(buffer, this.vysledokTestu);
+            HODNOTA_TESTU.write(buffer, this.hodnotaTestu);
+            POZNAMKA.write(buffer, this.poznamka, format);
+        } catch (BufferOverflowException e) {
+            throw new RuntimeException("Error serializing PCRTest", e);
         }
-        return new String(chars).replace("\u0000", "");
+    }
+
+    @Override
+    public boolean fits(RecordFormat format) {
+        return UUID_PACIENTA.fits(this.UUIDPacienta, format)
+                && POZNAMKA.fits(this.poznamka, format);
+    }
+
+    @Override
+    public boolean isEqualEncoded(ByteBuffer buffer, int offset, RecordFormat format) {
+        return KOD_TESTU.getAt(buffer, offset + KOD_TESTU.offset(format)) == this.kodTestu;
     }
 
     @Override
@@ -157,10 +182,11 @@ public class PCRTest implements IRecord<PCRTest>, IHashable {
 
     @Override
     public int getSize() {
-        return Long.BYTES +
-                Integer.BYTES * 3 +
-                1 +
-                Double.BYTES +
-                (this.MAX_UUID_LENGTH + this.MAX_POZNAMKA_LENGTH) * Character.BYTES;
+        return this.getSize(RecordFormat.WIDE);
+    }
+
+    @Override
+    public int getSize(RecordFormat format) {
+        return SCHEMA.getSize(format);
     }
 }
@@ -0,0 +1,89 @@
+package Data;
+
+import DS.RecordFormat;
+import Interface.IRecordView;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+public class PCRTestView implements IRecordView<PCRTest> {
+    // Offsety polí berie zo schémy PCRTest, rozloženie sa tak nedá rozísť s PCRTest.writeTo
+    private ByteBuffer buffer;
+    private int offset;
+    private RecordFormat format;
+
+    @Override
+    public PCRTestView wrap(ByteBuffer buffer, int offset, RecordFormat format) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.format = format;
+        return this;
+    }
+
+    @Override
+    public PCRTestView wrap(ByteBuffer buffer, int offset) {
+        return this.wrap(buffer, offset, RecordFormat.WIDE);
+    }
+
+    public long getDatumTestuMillis() {
+        return PCRTest.DATUM_TESTU.getMillisAt(this.buffer, this.at(PCRTest.DATUM_TESTU));
+    }
+
+    public Date getDatumTestu() {
+        return new Date(this.getDatumTestuMillis());
+    }
+
+    public String getUUIDPacienta() {
+        return PCRTest.UUID_PACIENTA.getAt(this.buffer, this.at(PCRTest.UUID_PACIENTA), this.format);
+    }
+
+    public boolean hasUUIDPacienta(String uuid) {
+        return PCRTest.UUID_PACIENTA.equalsAt(this.buffer, this.at(PCRTest.UUID_PACIENTA), this.format, uuid);
+    }
+
+    public int getKodTestu() {
+        return PCRTest.KOD_TESTU.getAt(this.buffer, this.at(PCRTest.KOD_TESTU));
+    }
+
+    public boolean isVysledokTestu() {
+        return PCRTest.VYSLEDOK_TESTU.getAt(this.buffer, this.at(PCRTest.VYSLEDOK_TESTU));
+    }
+
+    public double getHodnotaTestu() {
+        return PCRTest.HODNOTA_TESTU.getAt(this.buffer, this.at(PCRTest.HODNOTA_TESTU));
+    }
+
+    public String getPoznamka() {
+        return PCRTest.POZNAMKA.getAt(this.buffer, this.at(PCRTest.POZNAMKA), this.format);
+    }
+
+    @Override
+    public PCRTest materialize() {
+        return new PCRTest().readFrom(this.buffer.duplicate().position(this.offset), this.format);
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+        sb.append("PCRTest{datumTestu=").append(this.getDatumTestu());
+        sb.append(", UUIDPacienta='");
+        PCRTest.UUID_PACIENTA.appendAt(sb, this.buffer, this.at(PCRTest.UUID_PACIENTA), this.format);
+        sb.append('\'');
+        sb.append(", kodTestu=").append(this.getKodTestu());
+        sb.append(", vysledokTestu=").append(this.isVysledokTestu());
+        sb.append(", hodnotaTestu=").append(this.getHodnotaTestu());
+        sb.append(", poznamka='");
+        PCRTest.POZNAMKA.appendAt(sb, this.buffer, this.at(PCRTest.POZNAMKA), this.format);
+        sb.append("'}");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        this.appendTo(sb);
+        return sb.toString();
+    }
+
+    private int at(RecordSchema.Field field) {
+        return this.offset + field.offset(this.format);
+    }
+}
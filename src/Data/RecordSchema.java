@@ -0,0 +1,290 @@
+package Data;
+
+import DS.RecordFormat;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+// Popis rozloženia záznamu: offsety a veľkosti polí sa pre každý formát vypočítajú raz.
+// Samotné kódovanie píše trieda záznamu priamo pole po poli (Osoba, PCRTest), polia dávajú iba zápis a čítanie svojho typu
+public final class RecordSchema {
+    private static final RecordFormat[] FORMATS = RecordFormat.values();
+
+    private final String name;
+    private final int[] sizes;
+
+    public RecordSchema(String name, Field... fields) {
+        this.name = name;
+        this.sizes = new int[FORMATS.length];
+        for (Field field : fields) {
+            if (field.schema != null) {
+                throw new IllegalArgumentException("Field already belongs to schema " + field.schema.name);
+            }
+        }
+        for (RecordFormat format : FORMATS) {
+            int offset = 0;
+            for (Field field : fields) {
+                field.offsets[format.ordinal()] = offset;
+                offset += field.size(format);
+            }
+            this.sizes[format.ordinal()] = offset;
+        }
+        for (Field field : fields) {
+            field.schema = this;
+        }
+    }
+
+    public int getSize(RecordFormat format) {
+        return this.sizes[format.ordinal()];
+    }
+
+    public static StringField string(int maxLength) {
+        return new StringField(maxLength);
+    }
+
+    public static DateField date() {
+        return new DateField();
+    }
+
+    public static IntField int32() {
+        return new IntField();
+    }
+
+    public static DoubleField float64() {
+        return new DoubleField();
+    }
+
+    public static BooleanField bool() {
+        return new BooleanField();
+    }
+
+    public static IntArrayField intArray(int length) {
+        return new IntArrayField(length);
+    }
+
+    // Pole vie čítať aj absolútne z bufferu, takže view a porovnanie kľúča nepotrebujú vlastné offsety
+    public abstract static class Field {
+        private final int[] offsets = new int[FORMATS.length];
+        private RecordSchema schema;
+
+        public int offset(RecordFormat format) {
+            return this.offsets[format.ordinal()];
+        }
+
+        public abstract int size(RecordFormat format);
+    }
+
+    // WIDE: dĺžka ako int a maxLength znakov UTF-16, COMPACT: viď CompactStrings
+    public static final class StringField extends Field {
+        private final int maxLength;
+
+        private StringField(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        public int getMaxLength() {
+            return this.maxLength;
+        }
+
+        // Dlhšiu hodnotu zápis oreže, odmietajú sa iba znaky mimo Latin-2 v COMPACT
+        public boolean fits(String value, RecordFormat format) {
+            if (format == RecordFormat.COMPACT) {
+                return CompactStrings.fits(value, this.maxLength);
+            }
+            return true;
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            if (format == RecordFormat.COMPACT) {
+                return CompactStrings.fieldSize(this.maxLength);
+            }
+            return Integer.BYTES + Character.BYTES * this.maxLength;
+        }
+
+        public void write(ByteBuffer buffer, String value, RecordFormat format) {
+            if (format == RecordFormat.COMPACT) {
+                CompactStrings.write(buffer, value, this.maxLength);
+                return;
+            }
+            buffer.putInt(Math.min(value.length(), this.maxLength));
+            for (int i = 0; i < this.maxLength; i++) {
+                buffer.putChar(i < value.length() ? value.charAt(i) : 0);
+            }
+        }
+
+        public String read(ByteBuffer buffer, RecordFormat format) {
+            int start = buffer.position();
+            String value = this.getAt(buffer, start, format);
+            buffer.position(start + this.size(format));
+            return value;
+        }
+
+        // Čítanie poľa, ktoré začína na absolútnom offsete fieldOffset
+        public String getAt(ByteBuffer buffer, int fieldOffset, RecordFormat format) {
+            StringBuilder sb = new StringBuilder(this.maxLength);
+            this.appendAt(sb, buffer, fieldOffset, format);
+            return sb.toString();
+        }
+
+        public void appendAt(StringBuilder sb, ByteBuffer buffer, int fieldOffset, RecordFormat format) {
+            if (format == RecordFormat.COMPACT) {
+                CompactStrings.appendAt(sb, buffer, fieldOffset, this.maxLength);
+                return;
+            }
+            int length = this.lengthAt(buffer, fieldOffset);
+            int charsOffset = fieldOffset + Integer.BYTES;
+            for (int i = 0; i < length; i++) {
+                sb.append(buffer.getChar(charsOffset + i * Character.BYTES));
+            }
+        }
+
+        public boolean equalsAt(ByteBuffer buffer, int fieldOffset, RecordFormat format, String value) {
+            if (format == RecordFormat.COMPACT) {
+                return CompactStrings.equalsAt(buffer, fieldOffset, this.maxLength, value);
+            }
+            int length = this.lengthAt(buffer, fieldOffset);
+            if (length != value.length()) {
+                return false;
+            }
+            int charsOffset = fieldOffset + Integer.BYTES;
+            for (int i = 0; i < length; i++) {
+                if (buffer.getChar(charsOffset + i * Character.BYTES) != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int lengthAt(ByteBuffer buffer, int fieldOffset) {
+            return Math.max(0, Math.min(buffer.getInt(fieldOffset), this.maxLength));
+        }
+    }
+
+    // Dátum sa ukladá ako milisekundy od epochy
+    public static final class DateField extends Field {
+        private DateField() {
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            return Long.BYTES;
+        }
+
+        public void write(ByteBuffer buffer, Date value) {
+            buffer.putLong(value.getTime());
+        }
+
+        public Date read(ByteBuffer buffer) {
+            return new Date(buffer.getLong());
+        }
+
+        public long getMillisAt(ByteBuffer buffer, int fieldOffset) {
+            return buffer.getLong(fieldOffset);
+        }
+    }
+
+    public static final class IntField extends Field {
+        private IntField() {
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            return Integer.BYTES;
+        }
+
+        public void write(ByteBuffer buffer, int value) {
+            buffer.putInt(value);
+        }
+
+        public int read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+
+        public int getAt(ByteBuffer buffer, int fieldOffset) {
+            return buffer.getInt(fieldOffset);
+        }
+    }
+
+    public static final class DoubleField extends Field {
+        private DoubleField() {
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            return Double.BYTES;
+        }
+
+        public void write(ByteBuffer buffer, double value) {
+            buffer.putDouble(value);
+        }
+
+        public double read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+
+        public double getAt(ByteBuffer buffer, int fieldOffset) {
+            return buffer.getDouble(fieldOffset);
+        }
+    }
+
+    // Jeden bajt, 1 pre true
+    public static final class BooleanField extends Field {
+        private BooleanField() {
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            return 1;
+        }
+
+        public void write(ByteBuffer buffer, boolean value) {
+            buffer.put((byte) (value ? 1 : 0));
+        }
+
+        public boolean read(ByteBuffer buffer) {
+            return buffer.get() != 0;
+        }
+
+        public boolean getAt(ByteBuffer buffer, int fieldOffset) {
+            return buffer.get(fieldOffset) != 0;
+        }
+    }
+
+    // Pole pevnej dĺžky, prázdny prvok (null) sa ukladá ako -1
+    public static final class IntArrayField extends Field {
+        private final int length;
+
+        private IntArrayField(int length) {
+            this.length = length;
+        }
+
+        public int getLength() {
+            return this.length;
+        }
+
+        @Override
+        public int size(RecordFormat format) {
+            return this.length * Integer.BYTES;
+        }
+
+        public void write(ByteBuffer buffer, Integer[] values) {
+            for (int i = 0; i < this.length; i++) {
+                buffer.putInt(values[i] != null ? values[i] : -1);
+            }
+        }
+
+        public Integer[] read(ByteBuffer buffer) {
+            Integer[] values = new Integer[this.length];
+            for (int i = 0; i < this.length; i++) {
+                int value = buffer.getInt();
+                values[i] = value != -1 ? value : null;
+            }
+            return values;
+        }
+
+        public int getAt(ByteBuffer buffer, int fieldOffset, int index) {
+            return buffer.getInt(fieldOffset + index * Integer.BYTES);
+        }
+    }
+}
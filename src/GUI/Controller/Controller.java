@@ -3,7 +3,9 @@ package GUI.Controller;
 import DS.ChainedBlock;
 import GUI.Model.Model;
 import Data.Osoba;
+import Data.OsobaView;
 import Data.PCRTest;
+import Data.PCRTestView;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -11,9 +13,13 @@ import java.util.List;
 
 public class Controller {
     private Model model;
+    private final OsobaView osobaView;
+    private final PCRTestView pcrTestView;
 
     public Controller() {
         this.model = null;
+        this.osobaView = new OsobaView();
+        this.pcrTestView = new PCRTestView();
     }
 
     public void createNewModelWithParams(String osobaFolderPath, String pcrFolderPath, int initialBuckets, int blockSizePrimary, int blockSizeOverflow) {
@@ -211,14 +217,18 @@ public class Controller {
             ChainedBlock<Osoba> b = this.model.getHashFileOsoba().getPrimaryFile().getBlock(cur);
             sb.append("Primary file Block ").append(cur).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
             for (int j = 0; j < b.getValidCount(); j++) {
-                sb.append("    ").append(b.getRecordAt(j)).append("\n");
+                sb.append("    ");
+                b.viewAt(j, this.osobaView).appendTo(sb);
+                sb.append("\n");
             }
             cur = b.getNextBlockIndex();
             while (cur != -1) {
                 b = this.model.getHashFileOsoba().getOverflowFile().getBlock(cur);
                 sb.append("   Overflow file Block ").append(cur).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
                 for (int j = 0; j < b.getValidCount(); j++) {
-                    sb.append("    ").append(b.getRecordAt(j)).append("\n");
+                    sb.append("    ");
+                    b.viewAt(j, this.osobaView).appendTo(sb);
+                    sb.append("\n");
                 }
                 cur = b.getNextBlockIndex();
             }
@@ -246,14 +256,18 @@ public class Controller {
             ChainedBlock<PCRTest> b = this.model.getHashFilePCRTest().getPrimaryFile().getBlock(cur);
             sb.append("Primary file Block ").append(cur).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
             for (int j = 0; j < b.getValidCount(); j++) {
-                sb.append("    ").append(b.getRecordAt(j)).append("\n");
+                sb.append("    ");
+                b.viewAt(j, this.pcrTestView).appendTo(sb);
+                sb.append("\n");
             }
             cur = b.getNextBlockIndex();
             while (cur != -1) {
                 b = this.model.getHashFilePCRTest().getOverflowFile().getBlock(cur);
                 sb.append("   Overflow file Block ").append(cur).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
                 for (int j = 0; j < b.getValidCount(); j++) {
-                    sb.append("    ").append(b.getRecordAt(j)).append("\n");
+                    sb.append("    ");
+                    b.viewAt(j, this.pcrTestView).appendTo(sb);
+                    sb.append("\n");
                 }
                 cur = b.getNextBlockIndex();
             }
@@ -301,14 +315,18 @@ public class Controller {
     private void printTests(StringBuilder sb, int i, ChainedBlock<PCRTest> b) {
         sb.append("Block ").append(i).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
         for (int j = 0; j < b.getValidCount(); j++) {
-            sb.append("    ").append(b.getRecordAt(j)).append("\n");
+            sb.append("    ");
+            b.viewAt(j, this.pcrTestView).appendTo(sb);
+            sb.append("\n");
         }
     }
 
     private void printRecords(StringBuilder sb, int i, ChainedBlock<Osoba> b) {
         sb.append("Block ").append(i).append(", NextBlockIndex: ").append(b.getNextBlockIndex()).append(" (").append(b.getValidCount()).append(" records):\n");
         for (int j = 0; j < b.getValidCount(); j++) {
-            sb.append("    ").append(b.getRecordAt(j)).append("\n");
+            sb.append("    ");
+            b.viewAt(j, this.osobaView).appendTo(sb);
+            sb.append("\n");
         }
     }
 
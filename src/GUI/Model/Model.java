@@ -1,11 +1,15 @@
 package GUI.Model;
 
+import DS.BufferPool;
+import DS.DurabilityMode;
 import DS.LinearHashFile;
+import DS.RecordFormat;
 import Data.Osoba;
 import Data.PCRTest;
 import java.io.File;
 
 public class Model {
+    private static final int BUFFER_POOL_CAPACITY = 256;
     private LinearHashFile<Osoba> hashFileOsoba;
     private LinearHashFile<PCRTest> hashFilePCRTest;
     private final SequenceManager pcrTestSequence;
@@ -14,6 +18,7 @@ public class Model {
     private File blockSizesFile;
     private int blockSizePrimary;
     private int blockSizeOverflow;
+    private final BufferPool bufferPool;
 
     public Model() {
         this("osoba_data", "pcr_data");
@@ -28,10 +33,14 @@ public class Model {
 
         this.blockSizesFile = new File(osobaFolder + File.separator + "block_sizes.txt");
         this.loadBlockSizes();
-        this.hashFileOsoba = new LinearHashFile<>(Osoba.class, 4, Osoba::getHash,
+        this.hashFileOsoba = new LinearHashFile<>(Osoba.class, Osoba::new, 4, Osoba::getHash,
                 osobaFolder, this.blockSizePrimary, this.blockSizeOverflow);
-        this.hashFilePCRTest = new LinearHashFile<>(PCRTest.class, 4, PCRTest::getHash,
+        this.hashFilePCRTest = new LinearHashFile<>(PCRTest.class, PCRTest::new, 4, PCRTest::getHash,
                 pcrFolder, this.blockSizePrimary, this.blockSizeOverflow);
+        this.bufferPool = new BufferPool(BUFFER_POOL_CAPACITY);
+        this.hashFileOsoba.setBufferPool(this.bufferPool);
+        this.hashFilePCRTest.setBufferPool(this.bufferPool);
+        this.setDurability(DurabilityMode.FSYNC_PER_OPERATION);
         this.pcrTestSequence = new SequenceManager();
     }
 
@@ -42,10 +51,16 @@ public class Model {
         this.createFolder(osobaFolderPath);
         this.createFolder(pcrFolderPath);
 
-        this.hashFileOsoba = new LinearHashFile<>(Osoba.class, initialBuckets,
+        this.hashFileOsoba = new LinearHashFile<>(Osoba.class, Osoba::new, initialBuckets,
                 Osoba::getHash, osobaFolderPath, blockSizePrimary, blockSizeOverflow);
-        this.hashFilePCRTest = new LinearHashFile<>(PCRTest.class, initialBuckets,
+        this.hashFilePCRTest = new LinearHashFile<>(PCRTest.class, PCRTest::new, initialBuckets,
                 PCRTest::getHash, pcrFolderPath, blockSizePrimary, blockSizeOverflow);
+        this.bufferPool = new BufferPool(BUFFER_POOL_CAPACITY);
+        this.hashFileOsoba.setBufferPool(this.bufferPool);
+        this.hashFilePCRTest.setBufferPool(this.bufferPool);
+        this.useCompactFormatIfEmpty(this.hashFileOsoba);
+        this.useCompactFormatIfEmpty(this.hashFilePCRTest);
+        this.setDurability(DurabilityMode.FSYNC_PER_OPERATION);
         this.pcrTestSequence = new SequenceManager();
         this.blockSizesFile = new File(osobaFolderPath + File.separator + "block_sizes.txt");
         this.blockSizePrimary = blockSizePrimary;
@@ -114,6 +129,18 @@ public class Model {
     }
 
     public void generujUdaje(int pocet) {
+        // hromadné generovanie sa synchronizuje raz na konci, nie po každom vložení
+        this.setDurability(DurabilityMode.NONE);
+        try {
+            this.generujZaznamy(pocet);
+        } finally {
+            this.setDurability(DurabilityMode.FSYNC_PER_OPERATION);
+            this.hashFileOsoba.sync();
+            this.hashFilePCRTest.sync();
+        }
+    }
+
+    private void generujZaznamy(int pocet) {
         for (int i = 0; i < pocet; i++) {
             Osoba osoba = Osoba.generateRandom();
             this.vlozOsobu(osoba);
@@ -132,6 +159,19 @@ public class Model {
         }
     }
 
+    private void setDurability(DurabilityMode durability) {
+        this.hashFileOsoba.setDurability(durability);
+        this.hashFilePCRTest.setDurability(durability);
+    }
+
+    // Nové súbory sa zakladajú v kompaktnom formáte, existujúce dáta si ponechajú svoj formát
+    private void useCompactFormatIfEmpty(LinearHashFile<?> hashFile) {
+        if (hashFile.getPrimaryFile().getTotalRecords() + hashFile.getOverflowFile().getTotalRecords() == 0) {
+            hashFile.setRecordFormat(RecordFormat.COMPACT);
+            hashFile.setFingerprintsEnabled(true);
+        }
+    }
+
     private void createFolder(String folderPath) {
         File folder = new File(folderPath);
         if (!folder.exists()) {
@@ -174,4 +214,8 @@ public class Model {
     public LinearHashFile<PCRTest> getHashFilePCRTest() {
         return this.hashFilePCRTest;
     }
+
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
 }
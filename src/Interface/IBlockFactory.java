@@ -0,0 +1,10 @@
+package Interface;
+
+import DS.Block;
+import DS.RecordFormat;
+
+import java.util.function.Supplier;
+
+public interface IBlockFactory<T extends IRecord<T>, B extends Block<T>> {
+    B create(Supplier<T> recordFactory, int recordSize, int blockSize, RecordFormat recordFormat);
+}
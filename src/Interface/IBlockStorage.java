@@ -0,0 +1,15 @@
+package Interface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface IBlockStorage {
+    void read(ByteBuffer destination, long position) throws IOException;
+    void write(ByteBuffer source, long position) throws IOException;
+    void write(ByteBuffer[] sources, long position) throws IOException;
+    long size() throws IOException;
+    void truncate(long size) throws IOException;
+    void force() throws IOException;
+    boolean isOpen();
+    void close() throws IOException;
+}
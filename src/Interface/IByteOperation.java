@@ -1,7 +1,20 @@
 package Interface;
 
+import java.nio.ByteBuffer;
+
 public interface IByteOperation<T> {
     T fromByteArray(byte[] bytesArray);
     byte[] toByteArray();
     int getSize();
+
+    // Zápis priamo na aktuálnu pozíciu buffera, posunie ju presne o getSize() bajtov
+    default void writeTo(ByteBuffer buffer) {
+        buffer.put(this.toByteArray(), 0, this.getSize());
+    }
+
+    default T readFrom(ByteBuffer buffer) {
+        byte[] bytes = new byte[this.getSize()];
+        buffer.get(bytes);
+        return this.fromByteArray(bytes);
+    }
 }
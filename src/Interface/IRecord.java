@@ -1,5 +1,9 @@
 package Interface;
 
+import DS.RecordFormat;
+
+import java.nio.ByteBuffer;
+
 public interface IRecord<T> extends IByteOperation<T> {
     boolean isEqual(T object);
     T createCopy();
@@ -12,4 +16,32 @@ public interface IRecord<T> extends IByteOperation<T> {
 
     @Override
     int getSize();
+
+    @Override
+    void writeTo(ByteBuffer buffer);
+
+    @Override
+    T readFrom(ByteBuffer buffer);
+
+    // Kódovanie v danom formáte súboru, WIDE je totožné s writeTo/readFrom bez formátu
+    void writeTo(ByteBuffer buffer, RecordFormat format);
+
+    T readFrom(ByteBuffer buffer, RecordFormat format);
+
+    int getSize(RecordFormat format);
+
+    // Záznam, ktorý sa v danom formáte nedá zakódovať (napr. znak mimo Latin-2 v COMPACT), súbor odmietne
+    default boolean fits(RecordFormat format) {
+        return true;
+    }
+
+    default boolean isEqualEncoded(ByteBuffer buffer, int offset) {
+        return this.isEqualEncoded(buffer, offset, RecordFormat.WIDE);
+    }
+
+    // Porovnanie kľúča so záznamom zakódovaným na danom offsete, buffer sa číta absolútne a jeho pozícia sa nemení
+    default boolean isEqualEncoded(ByteBuffer buffer, int offset, RecordFormat format) {
+        T other = this.createCopy();
+        return this.isEqual(((IRecord<T>) other).readFrom(buffer.duplicate().position(offset), format));
+    }
 }
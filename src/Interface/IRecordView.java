@@ -0,0 +1,16 @@
+package Interface;
+
+import DS.RecordFormat;
+
+import java.nio.ByteBuffer;
+
+public interface IRecordView<T> {
+    // View číta polia priamo z buffera, platí len kým sa buffer neprepíše alebo view neprenasmeruje
+    IRecordView<T> wrap(ByteBuffer buffer, int offset, RecordFormat format);
+    T materialize();
+    void appendTo(StringBuilder sb);
+
+    default IRecordView<T> wrap(ByteBuffer buffer, int offset) {
+        return this.wrap(buffer, offset, RecordFormat.WIDE);
+    }
+}
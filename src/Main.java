@@ -17,6 +17,7 @@ public class Main {
         System.out.println("Testing with seed: " + seed);
         LinearHashFile<Osoba> hashFile = new LinearHashFile<>(
                 Osoba.class,
+                Osoba::new,
                 4,
                 Osoba::getHash,
                 "primary_data.bin",
@@ -0,0 +1,70 @@
+package Tester;
+
+import DS.LinearHashFile;
+import Data.Osoba;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class BackgroundSplitBenchmark {
+
+    private static final int RECORDS = 20000;
+
+    public static void main(String[] args) {
+        System.out.println("Records: " + RECORDS);
+
+        // Zahriatie JIT
+        runInserts(false, false);
+        runInserts(true, false);
+
+        runInserts(false, true);
+        runInserts(true, true);
+    }
+
+    // Meria sa iba čas volania insert; štiepenia na pozadí sa dobehnú až po meraní
+    private static void runInserts(boolean background, boolean report) {
+        File folder = new File("background_split_benchmark");
+        deleteFolder(folder);
+
+        LinearHashFile<Osoba> hashFile = new LinearHashFile<>(Osoba.class, Osoba::new, 4, Osoba::getHash, folder.getPath(), 512, 256);
+        // oba behy v súbežnom režime, aby sa líšili iba miestom štiepenia
+        hashFile.setConcurrentAccess(true);
+        hashFile.setBackgroundSplitting(background);
+
+        long[] latencies = new long[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            Osoba osoba = Osoba.fromUUID("P" + i);
+            long start = System.nanoTime();
+            hashFile.insert(osoba);
+            latencies[i] = System.nanoTime() - start;
+        }
+        hashFile.awaitBackgroundSplits();
+
+        if (report) {
+            Arrays.sort(latencies);
+            System.out.println(background ? "Background splits:" : "Splits on the insert path:");
+            System.out.printf("  p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[RECORDS - 1] / 1e3);
+            System.out.println("  buckets " + hashFile.getPrimaryFile().getTotalBlocks()
+                    + ", overflow blocks " + hashFile.getOverflowFile().getTotalBlocks()
+                    + ", splits " + hashFile.getSplitPolicy().getSplits());
+        }
+
+        hashFile.close();
+        deleteFolder(folder);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e3;
+    }
+
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
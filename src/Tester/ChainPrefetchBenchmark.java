@@ -0,0 +1,83 @@
+package Tester;
+
+import DS.LinearHashFile;
+import Data.Osoba;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ChainPrefetchBenchmark {
+
+    private static final int RECORDS = 3000;
+    private static final int LOOKUPS = 2000;
+    private static final int DISTINCT_KEYS = 8;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        System.out.println("Benchmark seed: " + seed);
+
+        File folder = new File("prefetch_benchmark");
+        deleteFolder(folder);
+
+        // Kľúče sa zámerne zhlukujú do niekoľkých bucketov, aby vznikli dlhé preplňujúce reťazce
+        LinearHashFile<Osoba> hashFile = new LinearHashFile<>(
+                Osoba.class,
+                Osoba::new,
+                4,
+                o -> Math.abs(o.getHash()) % DISTINCT_KEYS,
+                folder.getPath(),
+                512,
+                256
+        );
+
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            Osoba osoba = Osoba.generateRandom();
+            hashFile.insert(osoba);
+            uuids.add(osoba.getUUID());
+        }
+
+        Random random = new Random(seed);
+        List<String> lookups = new ArrayList<>();
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups.add(uuids.get(random.nextInt(uuids.size())));
+        }
+
+        // Zahriatie JIT
+        runLookups(hashFile, lookups, false);
+        runLookups(hashFile, lookups, true);
+
+        long withoutPrefetch = runLookups(hashFile, lookups, false);
+        long withPrefetch = runLookups(hashFile, lookups, true);
+
+        System.out.println("Lookups: " + LOOKUPS + " over " + RECORDS + " records in " + DISTINCT_KEYS + " chains");
+        System.out.printf("Without prefetch: %.2f ms (%.1f us/lookup)%n", withoutPrefetch / 1e6, withoutPrefetch / 1e3 / LOOKUPS);
+        System.out.printf("With prefetch:    %.2f ms (%.1f us/lookup)%n", withPrefetch / 1e6, withPrefetch / 1e3 / LOOKUPS);
+
+        hashFile.close();
+        deleteFolder(folder);
+    }
+
+    private static long runLookups(LinearHashFile<Osoba> hashFile, List<String> lookups, boolean prefetch) {
+        hashFile.setPrefetchEnabled(prefetch);
+        long start = System.nanoTime();
+        for (String uuid : lookups) {
+            if (hashFile.find(Osoba.fromUUID(uuid)) == null) {
+                throw new IllegalStateException("Record " + uuid + " not found");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
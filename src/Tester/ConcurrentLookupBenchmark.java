@@ -0,0 +1,95 @@
+package Tester;
+
+import DS.BufferPool;
+import DS.LinearHashFile;
+import Data.Osoba;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentLookupBenchmark {
+
+    private static final int RECORDS = 20000;
+    private static final int LOOKUPS_PER_THREAD = 200000;
+
+    public static void main(String[] args) {
+        File folder = new File("concurrent_lookup_benchmark");
+        deleteFolder(folder);
+
+        LinearHashFile<Osoba> hashFile = new LinearHashFile<>(Osoba.class, Osoba::new, 4, Osoba::getHash, folder.getPath(), 512, 256);
+        hashFile.setBufferPool(new BufferPool(4096));
+        hashFile.setConcurrentAccess(true);
+        for (int i = 0; i < RECORDS; i++) {
+            hashFile.insert(Osoba.fromUUID("P" + i));
+        }
+        System.out.println("Records: " + RECORDS + ", buckets: " + hashFile.getPrimaryFile().getTotalBlocks()
+                + ", cores: " + Runtime.getRuntime().availableProcessors());
+
+        // Zahriatie JIT
+        runLookups(hashFile, 1);
+
+        double single = 0;
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            double throughput = runLookups(hashFile, threads);
+            if (threads == 1) {
+                single = throughput;
+            }
+            System.out.printf("  %2d threads: %.0f lookups/s (%.2fx)%n", threads, throughput, throughput / single);
+        }
+
+        hashFile.close();
+        deleteFolder(folder);
+    }
+
+    // Každé vlákno hľadá náhodné kľúče, väčšina vyhľadávaní teda ide do rôznych bucketov
+    private static double runLookups(LinearHashFile<Osoba> hashFile, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                int found = 0;
+                for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                    if (hashFile.find(Osoba.fromUUID("P" + random.nextInt(RECORDS))) != null) {
+                        found++;
+                    }
+                }
+                return found;
+            }));
+        }
+        try {
+            for (Future<Integer> result : results) {
+                if (result.get() != LOOKUPS_PER_THREAD) {
+                    throw new IllegalStateException("Lookup missed an inserted record");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) threads * LOOKUPS_PER_THREAD / seconds;
+    }
+
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
@@ -0,0 +1,108 @@
+package Tester;
+
+import DS.Block;
+import DS.HeapFile;
+import DS.PlacementPolicy;
+import Data.Osoba;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FreeSpaceBenchmark {
+
+    private static final int RECORDS = 4000;
+    private static final int ROUNDS = 20;
+    private static final int DELETES = 600;
+    private static final int INSERTS = 450;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+        System.out.println("Benchmark seed: " + seed);
+        System.out.println("Records: " + RECORDS + ", " + ROUNDS + " rounds of " + DELETES + " deletes followed by " + INSERTS + " inserts");
+
+        // Zahriatie JIT
+        for (PlacementPolicy policy : PlacementPolicy.values()) {
+            runChurn(policy, seed, false);
+        }
+        for (PlacementPolicy policy : PlacementPolicy.values()) {
+            runChurn(policy, seed, true);
+        }
+    }
+
+    // Rovnaká postupnosť operácií pre každú politiku, líši sa iba výber bloku pri vkladaní; mazaní je viac ako vkladaní, súbor sa teda zmenšuje
+    private static void runChurn(PlacementPolicy policy, long seed, boolean report) {
+        File folder = new File("free_space_benchmark");
+        deleteFolder(folder);
+        folder.mkdirs();
+        File dataFile = new File(folder, "heap.bin");
+
+        HeapFile<Block<Osoba>, Osoba> heapFile = new HeapFile<Block<Osoba>, Osoba>(dataFile.getPath(), Osoba.class, Osoba::new, Block::new, 4096);
+        heapFile.setPlacementPolicy(policy);
+
+        Random random = new Random(seed);
+        List<Integer> blocks = new ArrayList<>();
+        List<String> uuids = new ArrayList<>();
+        int nextId = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            insert(heapFile, nextId++, blocks, uuids);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < DELETES; i++) {
+                int victim = random.nextInt(uuids.size());
+                if (heapFile.deleteRecord(blocks.get(victim), Osoba.fromUUID(uuids.get(victim))) == null) {
+                    throw new IllegalStateException("Record " + uuids.get(victim) + " not found");
+                }
+                int last = uuids.size() - 1;
+                blocks.set(victim, blocks.get(last));
+                uuids.set(victim, uuids.get(last));
+                blocks.remove(last);
+                uuids.remove(last);
+            }
+            for (int i = 0; i < INSERTS; i++) {
+                insert(heapFile, nextId++, blocks, uuids);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            report(policy, heapFile, dataFile, elapsed);
+        }
+
+        heapFile.close();
+        deleteFolder(folder);
+    }
+
+    private static void report(PlacementPolicy policy, HeapFile<Block<Osoba>, Osoba> heapFile, File dataFile, long elapsed) {
+        int usedBlocks = 0;
+        for (int i = 0; i < heapFile.getTotalBlocks(); i++) {
+            if (heapFile.getBlock(i).getValidCount() > 0) {
+                usedBlocks++;
+            }
+        }
+        double fill = 100.0 * heapFile.getTotalRecords() / ((double) usedBlocks * heapFile.getBlockFactor());
+
+        System.out.println(policy + ":");
+        System.out.printf("  file size: %d blocks, %d bytes%n", heapFile.getTotalBlocks(), dataFile.length());
+        System.out.printf("  blocks touched per full scan: %d (%d holding records, %.1f %% average fill)%n",
+                heapFile.getTotalBlocks(), usedBlocks, fill);
+        System.out.printf("  churn time: %.2f ms%n", elapsed / 1e6);
+    }
+
+    private static void insert(HeapFile<Block<Osoba>, Osoba> heapFile, int id, List<Integer> blocks, List<String> uuids) {
+        Osoba osoba = Osoba.fromUUID("P" + id);
+        blocks.add(heapFile.insertRecord(osoba));
+        uuids.add(osoba.getUUID());
+    }
+
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
@@ -74,18 +74,47 @@ public class HashFileTester<T extends IRecord<T> & IHashable> {
         System.out.println("[FIND] Key: " + entry.key + ", Found: " + hashFileFound);
     }
 
+    public void deleteRandomRecord() {
+        if (this.inserted.isEmpty()) {
+            System.out.println("[DELETE] No records to delete");
+            return;
+        }
+
+        int position = this.random.nextInt(this.inserted.size());
+        IndexedRecord<T> entry = this.inserted.get(position);
+        T removed = this.hashFile.delete(entry.record);
+
+        if (removed == null) {
+            throw new IllegalStateException("Delete failed: record with key " + entry.key + " not found");
+        }
+        if (!removed.isEqual(this.expectedRecords.get(entry.key))) {
+            throw new IllegalStateException("Delete returned wrong record for key: " + entry.key);
+        }
+        if (this.hashFile.find(entry.record) != null) {
+            throw new IllegalStateException("Deleted record with key " + entry.key + " is still present");
+        }
+
+        this.expectedRecords.remove(entry.key);
+        this.inserted.set(position, this.inserted.getLast());
+        this.inserted.removeLast();
+
+        System.out.println("[DELETE] Key: " + entry.key + ", Record: " + removed);
+        this.validateState();
+    }
+
     public void performRandomOperations(int count) {
         for (int i = 0; i < count; i++) {
             System.out.println("\n--- Operation " + (i + 1) + " ---");
 
-            int op = this.random.nextInt(2); // 0=insert, 1=find
+            int op = this.random.nextInt(4); // 0,1=insert, 2=find, 3=delete
 
             switch (op) {
-                case 0 -> {
+                case 0, 1 -> {
                     T rec = this.generateRandomRecord();
                     this.insertRecord(rec);
                 }
-                case 1 -> this.findRandomRecord();
+                case 2 -> this.findRandomRecord();
+                case 3 -> this.deleteRandomRecord();
             }
 
             this.printStatistics();
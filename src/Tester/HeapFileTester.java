@@ -2,6 +2,8 @@ package Tester;
 
 import DS.Block;
 import DS.HeapFile;
+import DS.RecordId;
+import DS.SlotMode;
 import Data.Osoba;
 import Interface.IRecord;
 
@@ -23,12 +25,17 @@ public class HeapFileTester<T extends IRecord<T>> {
     private final List<List<IRecord<T>>> expectedBlocks;
     private final Random random;
     private final List<IndexedRecord<T>> inserted;
+    // Očakávaný obsah podľa RID pre režim SlotMode.STABLE
+    private final Map<Long, T> expectedByRid;
+    private final List<Long> rids;
 
     public HeapFileTester(HeapFile<Block<T>,T> heapFile, long seed) {
         this.heapFile = heapFile;
         this.expectedBlocks = new ArrayList<>();
         this.random = new Random(seed);
         this.inserted = new ArrayList<>();
+        this.expectedByRid = new HashMap<>();
+        this.rids = new ArrayList<>();
         this.loadExistingHeapState();
     }
 
@@ -38,10 +45,17 @@ public class HeapFileTester<T extends IRecord<T>> {
             Block<T> block = this.heapFile.getBlock(i);
             List<IRecord<T>> list = new ArrayList<>();
 
-            for (int j = 0; j < block.getValidCount(); j++) {
+            for (int j = 0; j < block.getSlotCount(); j++) {
+                if (!block.isSlotUsed(j)) {
+                    continue;
+                }
                 IRecord<T> rec = block.getRecordAt(j);
                 list.add(rec);
                 this.inserted.add(new IndexedRecord<>(i, (T) rec));
+                if (this.heapFile.getSlotMode() == SlotMode.STABLE) {
+                    this.expectedByRid.put(RecordId.of(i, j), (T) rec);
+                    this.rids.add(RecordId.of(i, j));
+                }
             }
             this.expectedBlocks.add(list);
         }
@@ -69,8 +83,8 @@ public class HeapFileTester<T extends IRecord<T>> {
 
         for (IRecord<T> expectedRecord : expectedRecords) {
             boolean found = false;
-            for (int j = 0; j < block.getValidCount(); j++) {
-                if (block.getRecordAt(j).isEqual((T) expectedRecord)) {
+            for (int j = 0; j < block.getSlotCount(); j++) {
+                if (block.isSlotUsed(j) && block.getRecordAt(j).isEqual((T) expectedRecord)) {
                     found = true;
                     break;
                 }
@@ -160,14 +174,137 @@ public class HeapFileTester<T extends IRecord<T>> {
         this.heapFile.close();
     }
 
+    // Náhodné vkladanie, čítanie, úprava a mazanie cez RID; po každej operácii sa overí, že RID všetkých
+    // ostatných záznamov sa stále dajú prečítať, aj keď mazanie medzitým orezalo prázdne bloky na konci súboru
+    public void performRandomRidOperations(int count) {
+        if (this.heapFile.getSlotMode() != SlotMode.STABLE) {
+            throw new IllegalStateException("RID operations require SlotMode.STABLE");
+        }
+        int trims = 0;
+        for (int i = 0; i < count; i++) {
+
+            int op = this.random.nextInt(4); // vkladanie a mazanie v rovnakom pomere, aby sa koniec súboru často vyprázdnil
+
+            switch (op) {
+                case 0 -> {
+                    T rec = this.generateRandomRecord();
+                    long rid = this.insertByRid(rec);
+                    System.out.println("[INSERT] " + RecordId.toString(rid) + " " + rec);
+                }
+                case 1 -> {
+                    if (!this.rids.isEmpty()) {
+                        long rid = this.rids.get(this.random.nextInt(this.rids.size()));
+                        this.readByRid(rid);
+                        System.out.println("[READ] " + RecordId.toString(rid));
+                    }
+                }
+                case 2 -> {
+                    if (!this.rids.isEmpty()) {
+                        long rid = this.rids.get(this.random.nextInt(this.rids.size()));
+                        T rec = this.generateRandomRecord();
+                        this.updateByRid(rid, rec);
+                        System.out.println("[UPDATE] " + RecordId.toString(rid) + " " + rec);
+                    }
+                }
+                case 3 -> {
+                    if (!this.rids.isEmpty()) {
+                        int blocksBefore = this.heapFile.getTotalBlocks();
+                        long rid = this.deleteByRid(this.random.nextInt(this.rids.size()));
+                        System.out.println("[DELETE] " + RecordId.toString(rid));
+                        if (this.heapFile.getTotalBlocks() < blocksBefore) {
+                            trims++;
+                            System.out.println("[TRIM] " + blocksBefore + " -> " + this.heapFile.getTotalBlocks() + " blocks");
+                        }
+                    }
+                }
+            }
+            this.validateRids();
+            this.checkSize();
+        }
+        System.out.println("RID operations passed, live records: " + this.rids.size() + ", trims: " + trims);
+        this.heapFile.close();
+    }
+
+    private long insertByRid(T record) {
+        long rid = this.heapFile.insert(record);
+        if (this.expectedByRid.containsKey(rid)) {
+            throw new IllegalStateException("Insert reused live RID " + RecordId.toString(rid));
+        }
+        int blockIndex = RecordId.blockIndex(rid);
+        while (this.expectedBlocks.size() <= blockIndex) {
+            this.expectedBlocks.add(new ArrayList<>());
+        }
+        this.expectedBlocks.get(blockIndex).add(record);
+        this.inserted.add(new IndexedRecord<>(blockIndex, record));
+        this.expectedByRid.put(rid, record);
+        this.rids.add(rid);
+        return rid;
+    }
+
+    private void readByRid(long rid) {
+        T fromHeap = this.heapFile.read(rid);
+        if (fromHeap == null || !fromHeap.isEqual(this.expectedByRid.get(rid))) {
+            throw new IllegalStateException("Read mismatch at RID " + RecordId.toString(rid));
+        }
+    }
+
+    private void updateByRid(long rid, T record) {
+        if (!this.heapFile.update(rid, record)) {
+            throw new IllegalStateException("Update failed at live RID " + RecordId.toString(rid));
+        }
+        T old = this.expectedByRid.put(rid, record);
+        int blockIndex = RecordId.blockIndex(rid);
+        List<IRecord<T>> block = this.expectedBlocks.get(blockIndex);
+        block.removeIf(r -> r.isEqual(old));
+        block.add(record);
+        this.inserted.removeIf(entry -> entry.record.isEqual(old));
+        this.inserted.add(new IndexedRecord<>(blockIndex, record));
+        this.readByRid(rid);
+    }
+
+    private long deleteByRid(int ridIndex) {
+        long rid = this.rids.get(ridIndex);
+        this.rids.set(ridIndex, this.rids.get(this.rids.size() - 1));
+        this.rids.remove(this.rids.size() - 1);
+        T expected = this.expectedByRid.remove(rid);
+
+        T removed = this.heapFile.delete(rid);
+        if (removed == null || !removed.isEqual(expected)) {
+            throw new IllegalStateException("Delete mismatch at RID " + RecordId.toString(rid));
+        }
+        if (this.heapFile.read(rid) != null) {
+            throw new IllegalStateException("Deleted RID " + RecordId.toString(rid) + " still resolves");
+        }
+        this.expectedBlocks.get(RecordId.blockIndex(rid)).removeIf(r -> r.isEqual(expected));
+        this.inserted.removeIf(entry -> entry.record.isEqual(expected));
+        this.trimExpectedBlocks();
+        return rid;
+    }
+
+    // Každý živý RID musí ukazovať presne na svoj záznam
+    private void validateRids() {
+        for (Map.Entry<Long, T> entry : this.expectedByRid.entrySet()) {
+            T fromHeap = this.heapFile.read(entry.getKey());
+            if (fromHeap == null || !fromHeap.isEqual(entry.getValue())) {
+                throw new IllegalStateException("RID " + RecordId.toString(entry.getKey()) + " no longer resolves to its record");
+            }
+        }
+        if (this.heapFile.getTotalRecords() != this.expectedByRid.size()) {
+            throw new IllegalStateException("Record count mismatch: heap has " + this.heapFile.getTotalRecords()
+                    + ", expected " + this.expectedByRid.size());
+        }
+    }
+
     private void checkSize() {
         ArrayList<IRecord<T>> recordsInHeap = new ArrayList<>();
         ArrayList<IRecord<T>> recordsInExpected = new ArrayList<>();
         int totalBlocks = this.heapFile.getTotalBlocks();
         for (int i = 0; i < totalBlocks; i++) {
             Block<T> block = this.heapFile.getBlock(i);
-            for (int j = 0; j < block.getValidCount(); j++) {
-                recordsInHeap.add(block.getRecordAt(j));
+            for (int j = 0; j < block.getSlotCount(); j++) {
+                if (block.isSlotUsed(j)) {
+                    recordsInHeap.add(block.getRecordAt(j));
+                }
             }
         }
         for (List<IRecord<T>> blockRecords : this.expectedBlocks) {